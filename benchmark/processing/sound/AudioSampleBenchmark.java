@@ -0,0 +1,61 @@
+package processing.sound;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bulk access to the sample data of an AudioSample.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AudioSampleBenchmark {
+
+	@Param({ "512", "4096", "65536" })
+	public int frames;
+
+	private AudioSample sample;
+	private float[] data;
+	private int position = 0;
+
+	@Setup
+	public void setup() {
+		Sound.useOfflineRendering(null);
+		// 10 seconds of stereo audio
+		this.sample = new AudioSample(null, BenchmarkSketch.noise(2 * 441000), true);
+		this.data = new float[2 * this.frames];
+	}
+
+	// move through the sample so that the reads/writes are not always served 
+	// from the same cache lines
+	private int nextFrame() {
+		this.position = (this.position + this.frames) % this.sample.frames();
+		return this.position;
+	}
+
+	@Benchmark
+	public float[] read() {
+		this.sample.read(this.nextFrame(), this.data, 0, this.frames);
+		return this.data;
+	}
+
+	@Benchmark
+	public AudioSample write() {
+		this.sample.write(this.nextFrame(), this.data, 0, this.frames);
+		return this.sample;
+	}
+}
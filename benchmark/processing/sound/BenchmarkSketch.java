@@ -0,0 +1,35 @@
+package processing.sound;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+
+import processing.core.PApplet;
+
+/**
+ * Minimal stand-in for a sketch which loads files relative to the working 
+ * directory (the repository root when run through 'ant benchmark').
+ */
+class BenchmarkSketch extends PApplet {
+
+	@Override
+	public InputStream createInput(String path) {
+		try {
+			return new FileInputStream(path);
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Deterministic white noise in the range [-0.5, 0.5]
+	 */
+	static float[] noise(int length) {
+		java.util.Random random = new java.util.Random(42);
+		float[] data = new float[length];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = random.nextFloat() - 0.5f;
+		}
+		return data;
+	}
+}
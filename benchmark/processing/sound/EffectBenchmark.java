@@ -0,0 +1,67 @@
+package processing.sound;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Renders a noise source through the circuit-based effects using the offline 
+ * renderer. The 'none' effect measures the overhead of the synthesis graph 
+ * itself, to be subtracted from the other results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EffectBenchmark {
+
+	@Param({ "none", "reverb", "delay" })
+	public String effect;
+
+	@Param({ "64", "512", "4096" })
+	public int frames;
+
+	private WhiteNoise noise;
+	private double[] buffer;
+
+	@Setup
+	public void setup() {
+		Sound.useOfflineRendering(null);
+		this.noise = new WhiteNoise(null);
+		this.noise.play(0.5f);
+		if (this.effect.equals("reverb")) {
+			Reverb reverb = new Reverb(null);
+			reverb.process(this.noise);
+			reverb.set(0.8f, 0.5f, 0.5f);
+		} else if (this.effect.equals("delay")) {
+			Delay delay = new Delay(null);
+			delay.process(this.noise, 1.0f);
+			delay.set(0.3f, 0.5f);
+		}
+		this.buffer = new double[this.frames * Engine.getEngine().getOutputChannels()];
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.noise.stop();
+	}
+
+	@Benchmark
+	public double[] render() {
+		Engine.getEngine().render(this.buffer, this.frames);
+		return this.buffer;
+	}
+}
@@ -0,0 +1,63 @@
+package processing.sound;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of computing one spectrum, both from the live analyzer's capture buffer 
+ * and from a given sample.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FFTBenchmark {
+
+	@Param({ "512", "2048", "16384" })
+	public int bands;
+
+	private JSynFFT fft;
+	private float[] sample;
+	private float[] input;
+	private float[] spectrum;
+
+	@Setup
+	public void setup() {
+		this.fft = new JSynFFT(2 * this.bands);
+		this.sample = BenchmarkSketch.noise(2 * this.bands);
+		this.input = new float[this.sample.length];
+		this.spectrum = new float[this.bands];
+	}
+
+	@Benchmark
+	public float[] calculateMagnitudes() {
+		this.fft.calculateMagnitudes(this.spectrum);
+		return this.spectrum;
+	}
+
+	@Benchmark
+	public float[] analyzeSample() {
+		// analyzeSample() overwrites its input, so always start from a fresh copy
+		System.arraycopy(this.sample, 0, this.input, 0, this.sample.length);
+		return FFT.analyzeSample(this.input, this.spectrum);
+	}
+
+	@Benchmark
+	public float[] analyzeSampleAllocating() {
+		System.arraycopy(this.sample, 0, this.input, 0, this.sample.length);
+		return FFT.analyzeSample(this.input, this.bands);
+	}
+}
@@ -0,0 +1,79 @@
+package processing.sound;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Renders many independent voices, each a sawtooth oscillator with its own 
+ * reverb, with a growing number of synthesis threads (see Sound.threads()). 
+ * Dividing the time for one thread by the time for n threads gives the 
+ * speedup of the parallel synthesis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelSynthesisBenchmark {
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	@Param({ "64" })
+	public int voices;
+
+	// 4096 frames, or 512 blocks
+	private static final int FRAMES = 4096;
+
+	private List<SawOsc> oscillators = new ArrayList<SawOsc>();
+	private List<Reverb> reverbs = new ArrayList<Reverb>();
+	private double[] buffer;
+
+	@Setup
+	public void setup() {
+		Sound.useOfflineRendering(null);
+		Sound.threads(this.threads);
+		for (int i = 0; i < this.voices; i++) {
+			SawOsc osc = new SawOsc(null);
+			osc.play(110 + 10 * i, 0.5f / this.voices);
+			Reverb reverb = new Reverb(null);
+			reverb.process(osc);
+			reverb.set(0.8f, 0.5f, 0.5f);
+			this.oscillators.add(osc);
+			this.reverbs.add(reverb);
+		}
+		this.buffer = new double[ParallelSynthesisBenchmark.FRAMES * Engine.getEngine().getOutputChannels()];
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (Reverb reverb : this.reverbs) {
+			reverb.stop();
+		}
+		for (SawOsc osc : this.oscillators) {
+			osc.stop();
+		}
+		Sound.threads(1);
+	}
+
+	@Benchmark
+	public double[] render() {
+		Engine.getEngine().render(this.buffer, ParallelSynthesisBenchmark.FRAMES);
+		return this.buffer;
+	}
+}
@@ -0,0 +1,68 @@
+package processing.sound;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.softsynth.math.FourierMath;
+
+/**
+ * Magnitude spectrum of real input, computed with the real-valued transform 
+ * versus a complex transform of the same size with an imaginary part of 
+ * zeros, as FFT.analyzeSample() used to do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RealFFTBenchmark {
+
+	@Param({ "256", "1024", "4096", "16384" })
+	public int size;
+
+	private RealFFT fft;
+	private float[] sample;
+	private float[] real;
+	private float[] imaginary;
+	private float[] work;
+	private float[] magnitudes;
+
+	@Setup
+	public void setup() {
+		this.fft = RealFFT.get(this.size);
+		this.sample = BenchmarkSketch.noise(this.size);
+		this.real = new float[this.size];
+		this.imaginary = new float[this.size];
+		this.work = new float[this.size];
+		this.magnitudes = new float[this.size];
+	}
+
+	@Benchmark
+	public float[] realTransform() {
+		this.fft.magnitudes(this.sample, 0, this.work, this.magnitudes, 4f / this.size);
+		return this.magnitudes;
+	}
+
+	@Benchmark
+	public float[] complexTransform() {
+		// the complex transform works in place, so start from fresh copies
+		System.arraycopy(this.sample, 0, this.real, 0, this.size);
+		Arrays.fill(this.imaginary, 0);
+		FourierMath.transform(1, this.size, this.real, this.imaginary);
+		FourierMath.calculateMagnitudes(this.real, this.imaginary, this.magnitudes);
+		return this.magnitudes;
+	}
+}
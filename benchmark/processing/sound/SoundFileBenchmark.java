@@ -0,0 +1,44 @@
+package processing.sound;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding sound files from disk (bypassing the sample cache), using the 
+ * audio files that come with the examples.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SoundFileBenchmark {
+
+	@Param({ "examples/Analysis/BeatDetection/data/drums.wav", "examples/Soundfile/SimplePlayback/data/vibraphon.aiff" })
+	public String path;
+
+	private BenchmarkSketch sketch;
+
+	@Setup
+	public void setup() {
+		Sound.useOfflineRendering(null);
+		this.sketch = new BenchmarkSketch();
+	}
+
+	@Benchmark
+	public SoundFile decode() {
+		return new SoundFile(this.sketch, this.path, false);
+	}
+}
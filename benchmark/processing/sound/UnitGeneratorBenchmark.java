@@ -0,0 +1,74 @@
+package processing.sound;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jsyn.Synthesizer;
+
+/**
+ * Calls the generate() methods of the library's own unit generators directly, 
+ * block by block, for the given number of frames.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UnitGeneratorBenchmark {
+
+	@Param({ "64", "512", "4096" })
+	public int frames;
+
+	private JSynProcessor processor;
+	private BeatDetector.BeatDetectorUGen beatDetector;
+
+	@Setup
+	public void setup() {
+		Sound.useOfflineRendering(null);
+
+		this.processor = new JSynProcessor();
+		this.processor.pan(0.3f);
+		fill(this.processor.input.getValues());
+
+		this.beatDetector = new BeatDetector(null).new BeatDetectorUGen();
+		// allocates the energy buffers based on the frame rate
+		this.beatDetector.setSynthesisEngine(Sound.getSynthesisEngine());
+		fill(this.beatDetector.input.getValues());
+	}
+
+	private static void fill(double[] values) {
+		float[] noise = BenchmarkSketch.noise(values.length);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = noise[i];
+		}
+	}
+
+	@Benchmark
+	public void processor(Blackhole blackhole) {
+		for (int i = 0; i < this.frames; i += Synthesizer.FRAMES_PER_BLOCK) {
+			this.processor.generate(0, Synthesizer.FRAMES_PER_BLOCK);
+		}
+		blackhole.consume(this.processor.output.getValues(0));
+	}
+
+	@Benchmark
+	public void beatDetector(Blackhole blackhole) {
+		for (int i = 0; i < this.frames; i += Synthesizer.FRAMES_PER_BLOCK) {
+			this.beatDetector.generate(0, Synthesizer.FRAMES_PER_BLOCK);
+		}
+		blackhole.consume(this.beatDetector.output.getValues());
+	}
+}
@@ -41,7 +41,7 @@ public class Amplitude extends Analyzer implements Modulator {
 	}
 
 	protected void setInput(UnitOutputPort input) {
-		Engine.getEngine().add(this.follower);
+		this.engine.add(this.follower);
 		this.follower.start();
 		this.follower.input.connect(input);
 	}
@@ -12,8 +12,11 @@ public abstract class Analyzer {
 
 	protected SoundObject input;
 
+	// the engine that this analyzer was created on
+	protected Engine engine;
+
 	protected Analyzer(PApplet parent) {
-		Engine.getEngine(parent);
+		this.engine = Engine.getEngine(parent);
 	}
 
 	/**
@@ -25,11 +28,13 @@ public abstract class Analyzer {
 	public void input(SoundObject input) {
 		if (this.input == input) {
 			Engine.printWarning("This input was already connected to the analyzer");
+		} else if (input.engine != this.engine) {
+			Engine.printError("the analyzer and its input were created on different sound engines");
 		} else {
 			if (this.input != null) {
 				if (!this.input.isPlaying()) {
 					// unit was only analyzed but not playing out loud - remove from synth
-					Engine.getEngine().remove(this.input.circuit);
+					this.engine.remove(this.input.circuit);
 				}
 
 				this.removeInput();
@@ -37,7 +42,7 @@ public abstract class Analyzer {
 
 			this.input = input;
 			if (!this.input.isPlaying()) {
-				Engine.getEngine().add(input.circuit);
+				this.engine.add(input.circuit);
 			}
 
 			this.setInput(input.circuit.output.output);
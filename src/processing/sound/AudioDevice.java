@@ -8,9 +8,24 @@ import processing.core.PApplet;
  * @see Sound
  */
 public class AudioDevice {
+
+	/**
+	 * @param theParent
+	 *            typically "this"
+	 * @param sampleRate
+	 *            the sample rate of the synthesis engine
+	 * @param bufferSize
+	 *            the size of the audio output buffer in frames. It is converted 
+	 *            to a latency at the given sample rate and passed to 
+	 *            <b>Sound.bufferSize()</b>, so it now changes the latency of the 
+	 *            audio output (it used to be ignored).
+	 * @see Sound#bufferSize(int)
+	 */
 	public AudioDevice(PApplet theParent, int sampleRate, int bufferSize) {
 		Engine.printWarning("the AudioDevice class is deprecated and will be removed in future versions of the library. For configuration, please have a look at the new Sound class instead.");
-		// bufferSize is ignored - the parameter was necessary for the original library's FFT to work
 		new Sound(theParent).sampleRate(sampleRate);
+		// the parameter was originally necessary for the old library's FFT to 
+		// work, now it's used to set the latency of the audio output
+		Sound.bufferSize(bufferSize);
 	}
 }
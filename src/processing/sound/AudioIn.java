@@ -43,7 +43,7 @@ public class AudioIn extends SoundObject {
 		// TODO check if the current input device actually has 'in' input channels,
 		// otherwise an ugly exception is thrown
 
-		if (Engine.getEngine().getAudioDeviceManager() instanceof JSynAndroidAudioDeviceManager) {
+		if (this.engine.synth.getAudioDeviceManager() instanceof JSynAndroidAudioDeviceManager) {
 			if (in != 0) {
 				Engine.printWarning("if you want to capture audio from somewhere other than the default\n" +
 					"device on Android, use: new Sound(this).inputDevice(deviceID)\n" +
@@ -54,7 +54,7 @@ public class AudioIn extends SoundObject {
 				Engine.printError(AudioIn.ANDROID_PERMISSION_WARNING_MESSAGE);
 				throw new AndroidPermissionException("RECORD_AUDIO permission not granted");
 			}
-			Engine.printMessage("capturing audio in from device " + Engine.getEngine().getSelectedInputDeviceName());
+			Engine.printMessage("capturing audio in from device " + this.engine.getSelectedInputDeviceName());
 		}
 
 		this.input = new ChannelIn(in);
@@ -100,7 +100,7 @@ public class AudioIn extends SoundObject {
 	}
 
 	public void start() {
-		Engine.getEngine().add(this.circuit);
+		this.engine.add(this.circuit);
 	}
 
 	public void start(float amp) {
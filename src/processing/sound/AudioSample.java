@@ -1,12 +1,13 @@
 package processing.sound;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.jsyn.data.FloatSample;
 import com.jsyn.ports.QueueDataCommand;
 import com.jsyn.ports.QueueDataEvent;
 import com.jsyn.ports.UnitDataQueueCallback;
 import com.jsyn.unitgen.VariableRateDataReader;
-import com.jsyn.unitgen.VariableRateMonoReader;
-import com.jsyn.unitgen.VariableRateStereoReader;
 
 import processing.core.PApplet;
 
@@ -24,8 +25,44 @@ import processing.core.PApplet;
  */
 public class AudioSample extends SoundObject {
 
+	// voice stealing policies (see voices())
+	public static final int OLDEST = 0;
+	public static final int QUIETEST = 1;
+	public static final int LOWEST_PRIORITY = 2;
+
+	// note that for compact and memory-mapped samples (see Sound.sampleStorage()
+	// and Sound.memoryMap()), sample.getBuffer() returns a copy of the data
 	protected FloatSample sample;
 	protected VariableRateDataReader player;
+	protected JSynFadeOut fade;
+
+	// additional players for concurrent playback of this sample, only used by
+	// the original AudioSample object (see getUnusedPlayer())
+	private List<AudioSample> voices = new ArrayList<AudioSample>();
+	// 0 means no limit
+	private int maxVoices = 0;
+	private int stealing = AudioSample.OLDEST;
+	private int priority = 0;
+	// time the current playback was started, for stealing the oldest voice
+	private long startTime = 0;
+
+	// loop region of the current playback (see loopFrames()), loopLength is 0
+	// when no loop region is used
+	private int loopStart = 0;
+	private int loopLength = 0;
+	private int crossfade = 0;
+	// how often the loop section is played (0 until release() is called), and
+	// whether the rest of the audiosample has already been queued after it
+	private int loops = 0;
+	private boolean tailQueued = false;
+	// remaining repetitions of the loop section when paused within it, -1 when
+	// play() should simply continue from the cued position
+	private int pausedLoops = -1;
+	// number of frames played before entering the loop region
+	private int attackLength = 0;
+	// DataReader's queue status when playback of the part after the loop
+	// region started, -1 while it hasn't started yet
+	private volatile long tailStartFrameCount = -1;
 
 	// cued frame index of this sample
 	protected int startFrame = 0;
@@ -62,7 +99,7 @@ public class AudioSample extends SoundObject {
 	 */
 	public AudioSample(PApplet parent, int frames, boolean stereo, int frameRate) {
 		super(parent);
-		this.sample = new FloatSample(frames, stereo ? 2 : 1);
+		this.sample = JSynCompactSample.create(frames, stereo ? 2 : 1);
 		this.sample.setFrameRate(frameRate);
 		this.initiatePlayer();
 	}
@@ -97,7 +134,7 @@ public class AudioSample extends SoundObject {
 
 	public AudioSample(PApplet parent, float[] data, boolean stereo, int frameRate) {
 		super(parent);
-		this.sample = new FloatSample(data, stereo ? 2 : 1);
+		this.sample = JSynCompactSample.create(data, stereo ? 2 : 1);
 		this.sample.setFrameRate(frameRate);
 		this.initiatePlayer();
 	}
@@ -107,22 +144,35 @@ public class AudioSample extends SoundObject {
 		super(parent);
 	}
 
+	AudioSample(Engine engine) {
+		super(engine);
+	}
+
 	// private constructor for cloning (see getUnusedPlayer() method below)
 	protected AudioSample(AudioSample original) {
-		super(null);
+		super(original.engine);
 		this.sample = original.sample;
 		this.initiatePlayer();
+		this.copySettings(original);
+	}
+
+	private void copySettings(AudioSample original) {
 		this.player.amplitude.set(original.player.amplitude.get());
 		this.player.rate.set(original.player.rate.get());
 		this.startFrame = original.startFrame;
+		this.priority = original.priority;
 	}
 
 	// should be called by the constructor after the sample object has been set
 	protected void initiatePlayer() {
 		if (this.channels() == 2) {
-			this.player = new VariableRateStereoReader();
+			JSynStereoSampleReader reader = new JSynStereoSampleReader();
+			this.fade = reader.fade;
+			this.player = reader;
 		} else {
-			this.player = new VariableRateMonoReader();
+			JSynMonoSampleReader reader = new JSynMonoSampleReader();
+			this.fade = reader.fade;
+			this.player = reader;
 		}
 
 		// needs to be set explicitly
@@ -241,6 +291,7 @@ public class AudioSample extends SoundObject {
 	private boolean setStartFrame(int frameNumber) {
 		if (this.checkStartFrame(frameNumber)) {
 			this.startFrame = frameNumber;
+			this.pausedLoops = -1;
 			return true;
 		} else {
 			return false;
@@ -259,6 +310,7 @@ public class AudioSample extends SoundObject {
 			return false;
 		}
 		this.startFrame = startFrame;
+		this.pausedLoops = -1;
 		return true;
 	}
 
@@ -304,18 +356,130 @@ public class AudioSample extends SoundObject {
 	// helper function: when called on a soundfile already running, the original
 	// library triggered a second (concurrent) playback. with JSyn, every data
 	// reader can only do one playback at a time, so if the present player
-	// is busy we need to create a new one with the exact same settings and
-	// trigger it instead (see JSyn's VoiceAllocator class)
+	// is busy we use another one with the exact same settings from the voice
+	// pool instead (see JSyn's VoiceAllocator class). new players are only
+	// created when all existing ones are busy, and never once the voice limit
+	// has been set (see voices()).
 	protected AudioSample getUnusedPlayer() {
-		// TODO could implement a more intelligent player allocation pool method here to
-		// limit the total number of playback voices
-		if (this.isPlaying()) {
+		AudioSample free = null;
+		AudioSample victim = null;
+		AudioSample fading = null;
+		int active = 0;
+		for (int i = -1; i < this.voices.size(); i++) {
+			AudioSample voice = i == -1 ? this : this.voices.get(i);
+			if (voice.fade.isSilent()) {
+				// a stolen voice that has finished fading out
+				voice.stop();
+			}
+			if (!voice.isPlaying()) {
+				if (free == null) {
+					free = voice;
+				}
+			} else if (voice.fade.isFading()) {
+				if (fading == null || voice.fade.gain() < fading.fade.gain()) {
+					fading = voice;
+				}
+			} else {
+				active++;
+				if (victim == null || this.stealBefore(voice, victim)) {
+					victim = voice;
+				}
+			}
+		}
+
+		if (this.maxVoices > 0 && active >= this.maxVoices) {
+			// the stolen voice keeps playing (on its own player) for a few
+			// milliseconds while it is faded out, to avoid a click
+			victim.fade.start(this.engine.getSampleRate());
+		}
+
+		if (free == null && this.maxVoices > 0 && fading != null) {
+			// the preallocated players are all busy because voices were stolen
+			// in quick succession: cut off the voice which is closest to the
+			// end of its fade-out rather than growing the pool
+			fading.stop();
+			free = fading;
+		}
+
+		if (free == null) {
 			// use private constructor which copies the sample as well as all playback
 			// settings over
-			return new AudioSample(this);
-		} else {
-			return this;
+			free = new AudioSample(this);
+			this.voices.add(free);
+		} else if (free != this) {
+			free.copySettings(this);
+		}
+		return free;
+	}
+
+	// note that QUIETEST compares the amplitude that was set with amp(), not
+	// the actual loudness of the audio that is currently played back
+	private boolean stealBefore(AudioSample voice, AudioSample other) {
+		if (this.stealing == AudioSample.QUIETEST && voice.player.amplitude.get() != other.player.amplitude.get()) {
+			return voice.player.amplitude.get() < other.player.amplitude.get();
+		} else if (this.stealing == AudioSample.LOWEST_PRIORITY && voice.priority != other.priority) {
+			return voice.priority < other.priority;
 		}
+		return voice.startTime < other.startTime;
+	}
+
+	/**
+	 * Limit the number of concurrent playbacks of this audiosample. When 
+	 * <b>play()</b> is called while the audiosample is already playing, the 
+	 * sample is played back once more in parallel. Once the given number of 
+	 * parallel playbacks (voices) is reached, another call to <b>play()</b> 
+	 * quickly fades out one of the playing voices. The players for all 
+	 * voices, plus one more for every voice to take over while a stolen 
+	 * voice is fading out, are created right away, so that no new objects 
+	 * need to be created during playback.
+	 * 
+	 * @param maxVoices
+	 *            the maximum number of voices (0 for no limit)
+	 * @param stealing
+	 *            which voice to cut off when the limit is reached: 
+	 *            <b>AudioSample.OLDEST</b> (the default), 
+	 *            <b>AudioSample.QUIETEST</b> (the voice with the lowest 
+	 *            amplitude as set by <b>amp()</b>, regardless of how loud 
+	 *            the sample itself is at that point), or <b>AudioSample.LOWEST_PRIORITY</b> (see 
+	 *            <b>priority()</b>, ties are broken by age)
+	 * @webref Sampling:AudioSample
+	 * @webBrief Limit the number of concurrent playbacks of this audiosample.
+	 * @see AudioSample#priority(int)
+	 */
+	public void voices(int maxVoices, int stealing) {
+		if (maxVoices < 0) {
+			Engine.printError("number of voices can't be negative");
+			return;
+		}
+		if (stealing < AudioSample.OLDEST || stealing > AudioSample.LOWEST_PRIORITY) {
+			Engine.printError("voice stealing policy has to be one of AudioSample.OLDEST, AudioSample.QUIETEST or AudioSample.LOWEST_PRIORITY");
+			return;
+		}
+		this.maxVoices = maxVoices;
+		this.stealing = stealing;
+		while (this.voices.size() + 1 < 2 * maxVoices) {
+			this.voices.add(new AudioSample(this));
+		}
+	}
+
+	public void voices(int maxVoices) {
+		this.voices(maxVoices, this.stealing);
+	}
+
+	/**
+	 * Set the priority of subsequent playbacks of this audiosample, which is 
+	 * used to decide which voice to cut off when the voice limit is reached 
+	 * with the <b>AudioSample.LOWEST_PRIORITY</b> policy.
+	 * 
+	 * @param priority
+	 *            the priority, voices with lower values are cut off first 
+	 *            (default: 0)
+	 * @webref Sampling:AudioSample
+	 * @webBrief Set the priority of subsequent playbacks of this audiosample.
+	 * @see AudioSample#voices(int, int)
+	 */
+	public void priority(int priority) {
+		this.priority = priority;
 	}
 
 	private void setStartFrameCountOffset() {
@@ -331,6 +495,11 @@ public class AudioSample extends SoundObject {
 		super.play(); // adds the player
 		this.setStartFrameCountOffset();
 		this.startFrame = startFrame;
+		// keep the sample from being evicted from the cache while it is playing
+		SoundFile.CACHE.playing(this.sample, this);
+		this.fade.reset();
+		this.loopLength = 0;
+		this.pausedLoops = -1;
 		QueueDataCommand cmd = this.player.dataQueue.createQueueDataCommand(this.sample, startFrame, numFrames);
 		// TODO setAutoStop(true) ?
 		// TODO setImmediate(true) ?
@@ -343,6 +512,7 @@ public class AudioSample extends SoundObject {
 		this.player.getSynthesizer().queueCommand(cmd);
 		this.isPlayingAtLeastUntil = System.currentTimeMillis() + 50;
 		this.isPlaying = true;
+		this.startTime = System.nanoTime();
 	}
 
 	private void loopInternal(int startFrame, int numFrames) {
@@ -406,22 +576,184 @@ public class AudioSample extends SoundObject {
 		this.loop(rate, pos, amp);
 	}
 
-//	public void loopFrames(int startFrame, int numFrames) {
-		// TODO check startFrame, numFrames
-//		this.loopInternal(startFrame, numFrames, 0);
-//	}
+	/**
+	 * Play the audiosample and repeat a section of it in a loop. Playback 
+	 * starts from the cued position (see <b>cue()</b>, by default from the 
+	 * beginning of the audiosample), continues into the loop section, which 
+	 * is repeated until <b>release()</b> is called, and then plays the rest 
+	 * of the audiosample after the loop section (like the sustain loop of a 
+	 * sampler instrument). If the cued position is after the end of the loop 
+	 * section, playback starts at the beginning of the loop section.
+	 * 
+	 * Use <b>loopCrossfade()</b> to avoid clicks at the loop points.
+	 * 
+	 * @param startFrame
+	 *            the first frame of the loop section
+	 * @param numFrames
+	 *            the length of the loop section, in frames
+	 * @webref Sampling:AudioSample
+	 * @webBrief Play the audiosample and repeat a section of it in a loop.
+	 * @see AudioSample#release()
+	 * @see AudioSample#loopCrossfade(int)
+	 */
+	public void loopFrames(int startFrame, int numFrames) {
+		this.loopFrames(startFrame, numFrames, 0);
+	}
 
-//	public void loopFrames(int startFrame, int numFrames, int loops) {
-		// TODO check startFrame, numFrames, loop > 1
-//		this.loopInternal(startFrame, numFrames, loops);
-//	}
+	/**
+	 * @param loops
+	 *            how often the loop section is played before playback continues 
+	 *            with the rest of the audiosample (0 to loop until 
+	 *            <b>release()</b> is called)
+	 */
+	public void loopFrames(int startFrame, int numFrames, int loops) {
+		if (!this.checkStartFrame(startFrame)) {
+			return;
+		}
+		if (numFrames < 1 || startFrame + numFrames > this.frames()) {
+			Engine.printError("the loop section has to be at least one frame long and can't extend past the end of the audiosample");
+			return;
+		}
+		if (loops < 0) {
+			Engine.printError("number of loops can't be negative");
+			return;
+		}
+		this.loopSectionInternal(startFrame, numFrames, loops);
+	}
 
-	// TODO add same functions but specifying loop section in seconds
-//	public void loopSection(float start, float duration) {
-//	}
-//	public void loopSection(float start, float duration, int loops) {
-//	}
+	/**
+	 * Play the audiosample and repeat a section of it in a loop, see 
+	 * <b>loopFrames()</b>.
+	 * 
+	 * @param start
+	 *            the beginning of the loop section, in seconds
+	 * @param duration
+	 *            the length of the loop section, in seconds
+	 * @webref Sampling:AudioSample
+	 * @webBrief Play the audiosample and repeat a section of it in a loop.
+	 * @see AudioSample#loopFrames(int, int)
+	 */
+	public void loopSection(float start, float duration) {
+		this.loopSection(start, duration, 0);
+	}
 
+	/**
+	 * @param loops
+	 *            how often the loop section is played before playback continues 
+	 *            with the rest of the audiosample (0 to loop until 
+	 *            <b>release()</b> is called)
+	 */
+	public void loopSection(float start, float duration, int loops) {
+		int startFrame = Math.round(start * this.sampleRate());
+		this.loopFrames(startFrame, Math.min(Math.round(duration * this.sampleRate()), this.frames() - startFrame), loops);
+	}
+
+	/**
+	 * Set the number of frames over which the end of the loop section is 
+	 * crossfaded with its beginning when playing with <b>loopFrames()</b> or 
+	 * <b>loopSection()</b>, to avoid clicks at the loop points. The crossfade 
+	 * uses the audio following the end of the loop section, so it is limited 
+	 * to the number of frames after the loop section.
+	 * 
+	 * @param frames
+	 *            length of the crossfade, in frames (default 0)
+	 * @webref Sampling:AudioSample
+	 * @webBrief Set the length of the crossfade at the loop points.
+	 * @see AudioSample#loopFrames(int, int)
+	 */
+	public void loopCrossfade(int frames) {
+		if (frames < 0) {
+			Engine.printError("crossfade length can't be negative");
+		} else {
+			this.crossfade = frames;
+		}
+	}
+
+	/**
+	 * Leave the loop section started by <b>loopFrames()</b> or 
+	 * <b>loopSection()</b>: the current repetition of the loop section is 
+	 * played to its end, then playback continues with the rest of the 
+	 * audiosample. When the loop section is repeated a given number of times, 
+	 * the rest of the audiosample is already set to follow the last 
+	 * repetition, so calling this method has no effect.
+	 * 
+	 * @webref Sampling:AudioSample
+	 * @webBrief Leave the loop section and play the rest of the audiosample.
+	 * @see AudioSample#loopFrames(int, int)
+	 */
+	public void release() {
+		if (this.loopLength == 0 || !this.isPlaying()) {
+			Engine.printWarning("trying to release an audiosample that is not playing a loop section");
+		} else if (!this.tailQueued) {
+			this.queueTail();
+		}
+	}
+
+	private void loopSectionInternal(int loopStart, int loopLength, int loops) {
+		this.stop();
+		super.play(); // adds the player
+		this.setStartFrameCountOffset();
+		SoundFile.CACHE.playing(this.sample, this);
+		this.fade.reset();
+
+		int loopEnd = loopStart + loopLength;
+		if (this.startFrame >= loopEnd) {
+			this.startFrame = loopStart;
+		}
+		this.loopStart = loopStart;
+		this.loopLength = loopLength;
+		this.loops = loops;
+		this.tailQueued = false;
+		this.pausedLoops = -1;
+		this.tailStartFrameCount = -1;
+
+		// play up to the loop section, or to the end of it if the cued position
+		// is within the loop section
+		int attackEnd = this.startFrame < loopStart ? loopStart : loopEnd;
+		this.attackLength = this.startFrame == loopStart ? 0 : attackEnd - this.startFrame;
+		if (this.attackLength > 0) {
+			this.player.getSynthesizer().queueCommand(this.player.dataQueue.createQueueDataCommand(this.sample, this.startFrame, this.attackLength));
+		}
+
+		// looping data keeps repeating until other data is queued after it
+		QueueDataCommand cmd = this.player.dataQueue.createQueueDataCommand(this.sample, loopStart, loopLength);
+		cmd.setCrossFadeIn(this.getCrossfade(loopEnd));
+		cmd.setNumLoops(loops - 1);
+		this.player.getSynthesizer().queueCommand(cmd);
+		if (loops > 0) {
+			this.queueTail();
+		}
+
+		this.isPlayingAtLeastUntil = System.currentTimeMillis() + 50;
+		this.isPlaying = true;
+		this.startTime = System.nanoTime();
+	}
+
+	private int getCrossfade(int loopEnd) {
+		return Math.min(this.crossfade, Math.min(this.loopLength, this.frames() - loopEnd));
+	}
+
+	// queue the rest of the audiosample after the loop section
+	private void queueTail() {
+		this.tailQueued = true;
+		int loopEnd = this.loopStart + this.loopLength;
+		// if the loop section extends to the end of the sample, queue its last
+		// frame so that the loop still finishes its current repetition
+		int tailStart = Math.min(loopEnd, this.frames() - 1);
+		QueueDataCommand cmd = this.player.dataQueue.createQueueDataCommand(this.sample, tailStart, this.frames() - tailStart);
+		cmd.setCrossFadeIn(this.getCrossfade(loopEnd));
+		cmd.setCallback(new UnitDataQueueCallback() {
+			public void started(QueueDataEvent event) {
+				tailStartFrameCount = player.dataQueue.getFrameCount() - (tailStart - loopEnd);
+			}
+			public void looped(QueueDataEvent event) {
+			}
+			public void finished(QueueDataEvent event) {
+				stop();
+			}
+		});
+		this.player.getSynthesizer().queueCommand(cmd);
+	}
 
 	/*
 	 * FIXME cueing a position for loops has to be handled differently than for
@@ -452,14 +784,25 @@ public class AudioSample extends SoundObject {
 		super.play(); // adds the player
 		this.setStartFrameCountOffset();
 		// only queueImmediate() guarantees that a directly subsequent call to .hasMore() returns true
+		// keep the sample from being evicted from the cache while it is playing
+		SoundFile.CACHE.playing(this.sample, this);
+		this.fade.reset();
+		this.loopLength = 0;
+		this.pausedLoops = -1;
 		QueueDataCommand cmd = this.player.dataQueue.createQueueDataCommand(this.sample, startFrame, numFrames);
 		cmd.setCallback(new PlaybackFinishedCallback());
 		this.player.getSynthesizer().queueCommand(cmd);
 		this.isPlayingAtLeastUntil = System.currentTimeMillis() + 50;
 		this.isPlaying = true;
+		this.startTime = System.nanoTime();
 	}
 
 	public void play() {
+		if (this.pausedLoops != -1) {
+			// continue the loop section that was paused, see pause()
+			this.loopSectionInternal(this.loopStart, this.loopLength, this.pausedLoops);
+			return;
+		}
 		// play() is different from jump() in that, if the current sample is
 		// already playing back, it creates a new player object to play from
 		// in chorus
@@ -593,7 +936,17 @@ public class AudioSample extends SoundObject {
 	 * @webBrief Resizes the underlying buffer of the audiosample to the given number of frames.
 	 */
 	public void resize(int frames, boolean stereo) {
+		if (this.sample instanceof JSynMappedSample) {
+			Engine.printError("sound files that are memory-mapped can't be resized");
+			return;
+		}
 		this.stop();
+		// players of the voice pool might have the wrong number of channels now
+		for (AudioSample voice : this.voices) {
+			voice.stop();
+		}
+		this.voices.clear();
+		Spectrogram.invalidate(this.sample);
 		this.sample.allocate(frames, stereo ? 2 : 1);
 		this.initiatePlayer(); // TODO re-initiation might be redundant
 	}
@@ -697,7 +1050,18 @@ public class AudioSample extends SoundObject {
 	 * @webBrief Get frame index of current sound file playback position.
 	 */
 	public int positionFrame() {
-		return (int) (this.startFrame + this.player.dataQueue.getFrameCount() - this.startFrameCountOffset) % this.frames();
+		long played = this.player.dataQueue.getFrameCount() - this.startFrameCountOffset;
+		if (this.loopLength > 0) {
+			// playing a loop section, see loopFrames()
+			long tailStart = this.tailStartFrameCount;
+			if (tailStart != -1) {
+				return (int) Math.min(this.loopStart + this.loopLength + this.player.dataQueue.getFrameCount() - tailStart, this.frames() - 1);
+			} else if (played < this.attackLength) {
+				return (int) (this.startFrame + played);
+			}
+			return (int) (this.loopStart + (played - this.attackLength) % this.loopLength);
+		}
+		return (int) (this.startFrame + played) % this.frames();
 	}
 	/**
 	 * Get current sound file playback position in percent.
@@ -718,7 +1082,9 @@ public class AudioSample extends SoundObject {
 
 	/**
 	 * Stop the playback of the sample, but cue it to the current position. 
-	 * The next call to <b>play()</b> will continue playing where it left off.
+	 * The next call to <b>play()</b> will continue playing where it left off. 
+	 * When paused while repeating a loop section, <b>play()</b> continues the 
+	 * loop section with its remaining repetitions.
 	 * 
 	 * @see AudioSample#cue(float)
 	 * @webref Sampling:AudioSample
@@ -726,14 +1092,36 @@ public class AudioSample extends SoundObject {
 	 */
 	public void pause() {
 		if (this.isPlaying()) {
+			int pausedLoops = this.getRemainingLoops();
 			this.stop();
 			this.startFrame = this.positionFrame();
 			this.setStartFrameCountOffset();
+			this.pausedLoops = pausedLoops;
 		} else {
 			Engine.printWarning("trying to pause an audio sample that is not playing");
 		}
 	}
 
+	// number of repetitions of the loop section that are still to be played
+	// after the current one (0 for an endless loop), or -1 if the current
+	// repetition is the last one and only the rest of the audiosample follows
+	private int getRemainingLoops() {
+		if (this.loopLength == 0 || this.tailStartFrameCount != -1) {
+			return -1;
+		}
+		long played = this.player.dataQueue.getFrameCount() - this.startFrameCountOffset;
+		if (played < this.attackLength) {
+			return this.tailQueued && this.loops == 0 ? -1 : this.loops;
+		}
+		if (this.loops == 0) {
+			return this.tailQueued ? -1 : 0;
+		}
+		long repetitions = (played - this.attackLength) / this.loopLength;
+		boolean atLoopStart = (played - this.attackLength) % this.loopLength == 0;
+		long remaining = this.loops - repetitions - (atLoopStart ? 0 : 1);
+		return remaining > 0 ? (int) remaining : -1;
+	}
+
 	protected boolean checkStartFrame(int startFrame) {
 		return this.checkStartFrame(startFrame, true);
 	}
@@ -857,6 +1245,7 @@ public class AudioSample extends SoundObject {
 			Engine.printWarning(
 					"the length of the array passed to write(float[]) does not match the number of frames of this audio sample");
 		}
+		Spectrogram.invalidate(this.sample);
 		this.sample.write(data);
 	}
 
@@ -885,6 +1274,7 @@ public class AudioSample extends SoundObject {
 	public void write(int startFrame, float[] data, int startIndex, int numFrames) {
 		// FIXME check stereo case
 		if (this.checkStartFrame(startFrame)) {
+			Spectrogram.invalidate(this.sample);
 			if (startFrame + numFrames < this.frames()) {
 				this.sample.write(startFrame, data, startIndex, numFrames);
 			} else {
@@ -910,7 +1300,54 @@ public class AudioSample extends SoundObject {
 					"write(int, float) only writes data to the left channel of a stereo file, please use one of the other write() methods to write data to all channels");
 		}
 		if (this.checkStartFrame(startFrame)) {
+			Spectrogram.invalidate(this.sample);
 			this.sample.writeDouble(index, value);
 		}
 	}
+
+	public Spectrogram spectrogram(int bands) {
+		return this.spectrogram(bands, bands);
+	}
+
+	public Spectrogram spectrogram(int bands, int hop) {
+		return this.spectrogram(bands, hop, true);
+	}
+
+	/**
+	 * Computes the frequency spectra of the entire audio sample at regular 
+	 * intervals, using all available processor cores. The spectra are 
+	 * identical to those that an <b>STFT</b> analyzer with the same number of 
+	 * bands and hop size would compute while the sample is played back at its 
+	 * original rate: spectrum <code>i</code> is computed from the 2*bands 
+	 * frames starting at frame <code>i * hop</code>, and only full windows 
+	 * are analyzed. Stereo samples are mixed down to mono before they are 
+	 * analyzed.
+	 * 
+	 * @param bands
+	 *            number of frequency bands of every spectrum. This parameter 
+	 *            needs to be a power of 2 (e.g. 16, 32, 64, 128, ...).
+	 * @param hop
+	 *            number of audio frames between the start of two consecutive 
+	 *            spectra (default: the number of bands)
+	 * @param cache
+	 *            whether to keep the result, so that later calls with the same 
+	 *            parameters return it without computing it again (default: 
+	 *            true). The cached spectrogram is discarded when the sample's 
+	 *            data is changed with <b>write()</b> or <b>resize()</b>.
+	 * @return the spectrogram of the audio sample, or null if it would be too 
+	 *         large to fit into a single array
+	 * @webref Sampling:AudioSample
+	 * @webBrief Computes the frequency spectra of the entire audio sample.
+	 * @see Spectrogram
+	 **/
+	public Spectrogram spectrogram(int bands, int hop, boolean cache) {
+		if (bands < 1 || Integer.bitCount(bands) != 1 || bands > 16384) {
+			Engine.printError("number of spectrogram bands needs to be a power of 2 no larger than 16384");
+			return null;
+		} else if (hop < 1) {
+			Engine.printError("hop size needs to be at least 1");
+			return null;
+		}
+		return Spectrogram.get(this.sample, bands, hop, cache);
+	}
 }
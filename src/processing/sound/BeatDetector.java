@@ -37,7 +37,7 @@ public class BeatDetector extends Analyzer {
 
   @Override
   protected void setInput(UnitOutputPort input) {
-    Engine.getEngine().add(this.detector);
+    this.engine.add(this.detector);
     this.detector.start();
     this.detector.input.connect(input);
   }
@@ -0,0 +1,191 @@
+package processing.sound;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.jsyn.data.FloatSample;
+import com.jsyn.util.SampleLoader;
+
+import processing.core.PApplet;
+
+/**
+ * Keeps the decoded audio of compressed sound files (such as MP3) in a
+ * folder next to the sketch, so that they only need to be decoded once. The
+ * decoded audio is stored as plain 16 bit WAV files, which can also be
+ * memory-mapped (see Sound.memoryMap()). Cache files are named after a hash
+ * of the path, size and modification time of the original file, so changing
+ * the original file invalidates its cache entry.
+ */
+class DecodeCache {
+
+	static boolean enabled = false;
+
+	private static final String FOLDER = ".sound-cache";
+
+	/**
+	 * @return the file that the decoded audio of the given sound file is
+	 * stored in
+	 */
+	private static File getCacheFile(PApplet parent, File source) {
+		String key = source.getAbsolutePath() + "|" + source.length() + "|" + source.lastModified();
+		StringBuilder hash = new StringBuilder();
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+			for (int i = 0; i < 8; i++) {
+				hash.append(String.format("%02x", digest[i]));
+			}
+		} catch (NoSuchAlgorithmException e) {
+			hash.append(Integer.toHexString(key.hashCode()));
+		}
+		return new File(parent.sketchPath(DecodeCache.FOLDER), source.getName() + "-" + hash + ".wav");
+	}
+
+	/**
+	 * Load the decoded audio of the given file from the cache, in the given
+	 * storage format (see JSynCompactSample).
+	 * @return the sample, or null if it is not in the cache
+	 */
+	static FloatSample load(PApplet parent, File source, int bits) {
+		if (!DecodeCache.enabled || source == null) {
+			return null;
+		}
+		File file = DecodeCache.getCacheFile(parent, source);
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			if (JSynMappedSample.enabled) {
+				FloatSample sample = JSynMappedSample.map(file);
+				if (sample != null) {
+					return sample;
+				}
+			}
+			try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+				return JSynCompactSample.convert(SampleLoader.loadFloatSample(in), bits);
+			}
+		} catch (IOException e) {
+			// corrupt cache file, decode the original again
+			file.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Writes decoded 16 bit little endian audio data of a sound file to the
+	 * cache while it is being decoded.
+	 */
+	static class Writer {
+		private final File file;
+		private final File temp;
+		private final int channels;
+		private final int frameRate;
+		private OutputStream out;
+		private int length = 0;
+
+		private Writer(File file, int channels, float frameRate) throws IOException {
+			this.file = file;
+			// write to a temporary file first, so that other sketches never see a
+			// half-written cache file
+			this.temp = new File(file.getPath() + ".tmp");
+			this.channels = channels;
+			this.frameRate = (int) frameRate;
+			file.getParentFile().mkdirs();
+			this.out = new BufferedOutputStream(new FileOutputStream(this.temp));
+			// the lengths in the header are filled in by finish()
+			this.out.write(DecodeCache.waveHeader(0, channels, this.frameRate));
+		}
+
+		void write(byte[] data, int offset, int length) {
+			if (this.out == null) {
+				return;
+			}
+			try {
+				this.out.write(data, offset, length);
+				this.length += length;
+			} catch (IOException e) {
+				this.fail(e);
+			}
+		}
+
+		void finish() {
+			if (this.out == null) {
+				return;
+			}
+			try {
+				this.out.close();
+				this.out = null;
+				try (RandomAccessFile raf = new RandomAccessFile(this.temp, "rw")) {
+					raf.write(DecodeCache.waveHeader(this.length, this.channels, this.frameRate));
+				}
+			} catch (IOException e) {
+				this.fail(e);
+				return;
+			}
+			if (!this.temp.renameTo(this.file)) {
+				this.temp.delete();
+			}
+		}
+
+		void abort() {
+			if (this.out != null) {
+				try {
+					this.out.close();
+				} catch (IOException e) {
+				}
+				this.out = null;
+			}
+			this.temp.delete();
+		}
+
+		private void fail(IOException e) {
+			Engine.printWarning("unable to write decoded audio to the cache: " + e.getMessage());
+			this.abort();
+		}
+	}
+
+	/**
+	 * Start writing the decoded audio of the given file to the cache.
+	 * @return a writer, or null if caching is disabled or not possible
+	 */
+	static Writer store(PApplet parent, File source, int channels, float frameRate) {
+		if (!DecodeCache.enabled || source == null) {
+			return null;
+		}
+		try {
+			return new Writer(DecodeCache.getCacheFile(parent, source), channels, frameRate);
+		} catch (IOException e) {
+			Engine.printWarning("unable to write decoded audio to the cache: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static byte[] waveHeader(int dataLength, int channels, int frameRate) {
+		ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+		header.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+		header.putInt(36 + dataLength);
+		header.put("WAVEfmt ".getBytes(StandardCharsets.US_ASCII));
+		header.putInt(16);
+		// PCM
+		header.putShort((short) 1);
+		header.putShort((short) channels);
+		header.putInt(frameRate);
+		header.putInt(frameRate * channels * 2);
+		header.putShort((short) (channels * 2));
+		header.putShort((short) 16);
+		header.put("data".getBytes(StandardCharsets.US_ASCII));
+		header.putInt(dataLength);
+		return header.array();
+	}
+}
@@ -32,8 +32,8 @@ public class Delay extends Effect<JSynDelay> {
 	 * @param delayTime Delay time to use when starting to process, in seconds.
 	 **/
 	public void process(SoundObject input, float maxDelayTime, float delayTime) {
-		this.left.setMaxDelayTime(maxDelayTime);
-		this.right.setMaxDelayTime(maxDelayTime);
+		this.left.setMaxDelayTime(maxDelayTime, this.engine.getSampleRate());
+		this.right.setMaxDelayTime(maxDelayTime, this.engine.getSampleRate());
 		this.time(delayTime);
 		// connect input in superclass method
 		super.process(input);
@@ -0,0 +1,134 @@
+package processing.sound;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import com.jsyn.devices.AudioDeviceManager;
+
+/**
+ * Remembers which output devices could or could not be opened at which sample
+ * rates, separately for every audio driver (JavaSound and PortAudio), so that
+ * on sketch startup devices don't have to be probed again: a device that
+ * worked is used straight away, and a device that failed with JavaSound is
+ * opened with PortAudio right away. The results are stored in a small
+ * properties file in the user's home directory, together with the channel
+ * counts of every device and a fingerprint of each driver's list of devices.
+ * Whenever a driver's device list changes (a device was plugged in or out, or
+ * a driver was updated), all previous results for that driver are discarded.
+ * The results for a single device are also ignored if its channel counts
+ * don't match the cached ones.
+ */
+class DeviceProbeCache {
+
+	static boolean enabled = true;
+
+	static final int UNKNOWN = 0;
+	static final int WORKS = 1;
+	static final int FAILS = 2;
+
+	private static final String FILENAME = ".processing-sound-devices.properties";
+
+	private final AudioDeviceManager deviceManager;
+	private final String driver;
+	private final File file;
+	private final Properties properties = new Properties();
+
+	DeviceProbeCache(AudioDeviceManager deviceManager) {
+		this.deviceManager = deviceManager;
+		this.driver = deviceManager.getName() + ".";
+		this.file = new File(System.getProperty("user.home"), DeviceProbeCache.FILENAME);
+		if (!DeviceProbeCache.enabled) {
+			return;
+		}
+		if (this.file.exists()) {
+			try (InputStream in = new FileInputStream(this.file)) {
+				this.properties.load(in);
+			} catch (IOException e) {
+				// start over with an empty cache
+			}
+		}
+		String fingerprint = DeviceProbeCache.fingerprint(deviceManager);
+		if (!fingerprint.equals(this.properties.getProperty(this.driver + "fingerprint"))) {
+			if (Engine.verbose && this.properties.getProperty(this.driver + "fingerprint") != null) {
+				Engine.printMessage("audio devices have changed since the last start, discarding cached device information");
+			}
+			// only discard the results of this driver
+			this.properties.keySet().removeIf(key -> ((String) key).startsWith(this.driver));
+			this.properties.setProperty(this.driver + "fingerprint", fingerprint);
+			for (int i = 0; i < deviceManager.getDeviceCount(); i++) {
+				this.properties.setProperty(this.driver + "channels." + deviceManager.getDeviceName(i).trim(), DeviceProbeCache.channels(deviceManager, i));
+			}
+			this.store();
+		}
+	}
+
+	boolean isFor(AudioDeviceManager deviceManager) {
+		return this.deviceManager == deviceManager;
+	}
+
+	/**
+	 * Identifies the driver and the names and channel counts of all its devices
+	 */
+	private static String fingerprint(AudioDeviceManager deviceManager) {
+		StringBuilder devices = new StringBuilder(deviceManager.getName());
+		devices.append(System.getProperty("os.name")).append(System.getProperty("java.version"));
+		for (int i = 0; i < deviceManager.getDeviceCount(); i++) {
+			devices.append('\n').append(deviceManager.getDeviceName(i))
+				.append('|').append(DeviceProbeCache.channels(deviceManager, i));
+		}
+		return Integer.toHexString(devices.toString().hashCode());
+	}
+
+	private static String channels(AudioDeviceManager deviceManager, int deviceId) {
+		return deviceManager.getMaxInputChannels(deviceId) + "|" + deviceManager.getMaxOutputChannels(deviceId);
+	}
+
+	private String key(String deviceName, int sampleRate) {
+		return this.driver + "output." + deviceName + "." + sampleRate;
+	}
+
+	/**
+	 * @return WORKS or FAILS if an output stream was (or could not be) opened
+	 * on the device at the given sample rate on a previous run, UNKNOWN
+	 * otherwise
+	 */
+	int getProbeResult(int deviceId, int sampleRate) {
+		if (!DeviceProbeCache.enabled) {
+			return DeviceProbeCache.UNKNOWN;
+		}
+		String deviceName = this.deviceManager.getDeviceName(deviceId).trim();
+		if (!DeviceProbeCache.channels(this.deviceManager, deviceId).equals(this.properties.getProperty(this.driver + "channels." + deviceName))) {
+			return DeviceProbeCache.UNKNOWN;
+		}
+		String result = this.properties.getProperty(this.key(deviceName, sampleRate));
+		if (result == null) {
+			return DeviceProbeCache.UNKNOWN;
+		}
+		return Boolean.parseBoolean(result) ? DeviceProbeCache.WORKS : DeviceProbeCache.FAILS;
+	}
+
+	void putProbeResult(int deviceId, int sampleRate, boolean works) {
+		if (!DeviceProbeCache.enabled || this.getProbeResult(deviceId, sampleRate) == (works ? DeviceProbeCache.WORKS : DeviceProbeCache.FAILS)) {
+			return;
+		}
+		String deviceName = this.deviceManager.getDeviceName(deviceId).trim();
+		this.properties.setProperty(this.driver + "channels." + deviceName, DeviceProbeCache.channels(this.deviceManager, deviceId));
+		this.properties.setProperty(this.key(deviceName, sampleRate), Boolean.toString(works));
+		this.store();
+	}
+
+	private void store() {
+		try (OutputStream out = new FileOutputStream(this.file)) {
+			this.properties.store(out, "Processing Sound library audio device cache, safe to delete");
+		} catch (IOException e) {
+			if (Engine.verbose) {
+				Engine.printWarning("could not write audio device cache file " + this.file + ": " + e.getMessage());
+			}
+		}
+	}
+}
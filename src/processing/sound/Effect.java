@@ -30,9 +30,12 @@ public abstract class Effect<EffectType extends UnitFilter> {
 	protected EffectType right;
 	protected UnitOutputPort output;
 
+	// the engine that this effect was created on
+	protected Engine engine;
+
 	// invoked by subclasses
 	protected Effect(PApplet parent) {
-		Engine.getEngine(parent);
+		this.engine = Engine.getEngine(parent);
 		this.left = this.newInstance();
 		this.right = this.newInstance();
 		TwoInDualOut merge = new TwoInDualOut();
@@ -57,7 +60,9 @@ public abstract class Effect<EffectType extends UnitFilter> {
 	 * @webref Effects:Effect
 	 */
 	public void process(SoundObject input) {
-		if (this.inputs.add(input)) {
+		if (input.engine != this.engine) {
+			Engine.printError("the effect and sound source were created on different sound engines");
+		} else if (this.inputs.add(input)) {
 			// attach effect to circuit until removed with effect.stop()
 			input.setEffect(this);
 		} else {
@@ -77,8 +82,8 @@ public abstract class Effect<EffectType extends UnitFilter> {
 				o.removeEffect(this);
 			}
 			this.inputs.clear();
-			Engine.getEngine().remove(this.left);
-			Engine.getEngine().remove(this.right);
+			this.engine.remove(this.left);
+			this.engine.remove(this.right);
 		}
 	}
 }
@@ -1,9 +1,12 @@
 package processing.sound;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.IntStream;
@@ -18,6 +21,7 @@ import javax.sound.sampled.SourceDataLine;
 
 import com.jsyn.JSyn;
 import com.jsyn.Synthesizer;
+import com.jsyn.data.FloatSample;
 import com.jsyn.devices.AudioDeviceFactory;
 import com.jsyn.devices.AudioDeviceManager;
 import com.jsyn.devices.AudioDeviceOutputStream;
@@ -28,6 +32,7 @@ import com.jsyn.unitgen.ChannelOut;
 import com.jsyn.unitgen.Multiply;
 import com.jsyn.unitgen.UnitGenerator;
 import com.jsyn.unitgen.UnitSource;
+import com.jsyn.util.WaveFileWriter;
 
 import processing.core.PApplet;
 
@@ -104,15 +109,16 @@ class Engine {
 	}
 
 	/**
-	 * Singleton instance that is created by the first method call to or creation 
-	 * of any Sound library class.
-	 * Any calls to configuration, start() or play() methods will be passed on to 
-	 * this engine. In theory it's possible to have multiple instances of the 
-	 * library run on several different sound devices simultaneously, by first 
-	 * setting this variable to null, forcing a (second) singleton to be created, 
-	 * and then swapping them out manually at will.
+	 * The current engine, which is created by the first method call to or 
+	 * creation of any Sound library class.
+	 * Any calls to the static configuration methods of the Sound and 
+	 * MultiChannel classes are passed on to this engine, and all Sound library 
+	 * objects are bound to the engine that was current when they were created. 
+	 * Additional engines, each running on their own sound device and synthesis 
+	 * thread, can be created with Engine.createEngine() and made current 
+	 * through Sound.use().
 	 */
-	private static Engine singleton;
+	private static volatile Engine current;
 
 	// static Engine getEngine(boolean portAudio) {
 	// 	return Engine.
@@ -126,14 +132,60 @@ class Engine {
 	}
 
 	static Engine getEngine(PApplet parent, boolean portAudio) {
-		if (Engine.singleton == null) {
-			// this might throw a RuntimeException, which is fine
-		 	Engine.singleton = new Engine(Engine.createAudioDeviceManager(portAudio));
+		if (Engine.current == null) {
+			Engine.current = Engine.createEngine(null, portAudio);
 		}
 		if (parent != null) {
-			Engine.singleton.registerWithParent(parent);
+			Engine.current.registerWithParent(parent);
 		}
-		return Engine.singleton;
+		return Engine.current;
+	}
+
+	/**
+	 * Create a new engine with its own synthesizer, independent of the current 
+	 * one (which stays current).
+	 */
+	static Engine createEngine(PApplet parent, boolean portAudio) {
+		Engine engine;
+		try {
+			engine = new Engine(Engine.createAudioDeviceManager(portAudio));
+		} catch (RuntimeException e) {
+			// no working sound card (e.g. on a headless server), fall back on a 
+			// virtual device so that the library can still be used
+			Engine.printWarning(e.getMessage());
+			Engine.printWarning("falling back to a virtual audio device, there will be no audible sound output");
+			engine = new Engine(new JSynVirtualAudioDeviceManager());
+		}
+		if (parent != null) {
+			engine.registerWithParent(parent);
+		}
+		return engine;
+	}
+
+	/**
+	 * Make the given engine the current one, which all subsequently created 
+	 * Sound library objects and static configuration calls apply to.
+	 */
+	static void setCurrentEngine(Engine engine) {
+		Engine.current = engine;
+	}
+
+	/**
+	 * Get the current engine (see setCurrentEngine()), making sure that it 
+	 * uses the given device manager. If no engine has been created yet, a new 
+	 * one is created and made current without ever touching the sound card(s) 
+	 * of the machine. Other engines are not affected.
+	 */
+	static Engine getEngine(PApplet parent, AudioDeviceManager audioDeviceManager) {
+		if (Engine.current == null) {
+			Engine.current = new Engine(audioDeviceManager);
+		} else {
+			Engine.current.useAudioDeviceManager(audioDeviceManager);
+		}
+		if (parent != null) {
+			Engine.current.registerWithParent(parent);
+		}
+		return Engine.current;
 	}
 
 	static AudioDeviceManager getAudioDeviceManager() {
@@ -142,7 +194,15 @@ class Engine {
 
 	protected Synthesizer synth;
 	boolean hasBeenUsed = false;
-	protected final Set<UnitGenerator> addedUnits = new HashSet<UnitGenerator>();
+	// units can also be added and removed by scheduled events on the synthesis 
+	// thread, which should never have to wait for a lock held by the sketch
+	protected final Set<UnitGenerator> addedUnits = Collections.newSetFromMap(new ConcurrentHashMap<UnitGenerator, Boolean>());
+	// block processing time and underrun detection
+	protected final UnderrunMonitor underrunMonitor = new UnderrunMonitor();
+	// events that are to be run on the synthesis thread at a given frame
+	protected final EventScheduler scheduler = new EventScheduler(this);
+	// per-unit CPU time accounting, only active after Sound.profile(true)
+	protected final JSynProfiler profiler = new JSynProfiler(this.underrunMonitor);
 
 	// multi-channel lineouts
 	protected ChannelOut[] output;
@@ -150,6 +210,14 @@ class Engine {
 	private Multiply[] volume;
 
 	private int sampleRate = 44100;
+	// latencies (in seconds) to be requested from the audio device, 0 means 
+	// the device's default
+	private double suggestedOutputLatency = 0;
+	private double suggestedInputLatency = 0;
+
+	// results of probing output devices with the current driver, shared across 
+	// sketch runs
+	private DeviceProbeCache probeCache;
 
 	protected int inputDevice = -1;
 	protected int outputDevice = -1;
@@ -192,6 +260,7 @@ class Engine {
 			}
 		}
 		this.synth = JSyn.createSynthesizer(deviceManager);
+		this.synth.addAudioTask(this.scheduler);
 		// try {
 			// this might be -1 if there is no device with inputs
 			// this.inputDevice = deviceManager.getDefaultInputDeviceID();
@@ -222,12 +291,59 @@ class Engine {
 		return this.isUsingPortAudio();
 	}
 
+	public boolean isUsingVirtualDevice() {
+		return this.synth.getAudioDeviceManager() instanceof JSynVirtualAudioDeviceManager;
+	}
+
+	/**
+	 * @return the virtual audio device that is currently used, or null (and 
+	 * print an error) if the engine is running on a real sound card
+	 */
+	protected JSynVirtualAudioDeviceManager getVirtualDevice() {
+		if (this.isUsingVirtualDevice()) {
+			return (JSynVirtualAudioDeviceManager) this.synth.getAudioDeviceManager();
+		}
+		Engine.printError("the Sound library is not using a virtual audio device, call Sound.useVirtualDevice() first");
+		return null;
+	}
+
+	public boolean isRenderingOffline() {
+		return this.isUsingVirtualDevice() && ((JSynVirtualAudioDeviceManager) this.synth.getAudioDeviceManager()).isOffline();
+	}
+
+	/**
+	 * Switch to a different device manager, such as a virtual device which only 
+	 * generates audio when it is explicitly asked to do so by one of the 
+	 * render() methods.
+	 */
+	protected void useAudioDeviceManager(AudioDeviceManager audioDeviceManager) {
+		this.createSynth(audioDeviceManager);
+		this.inputDevice = -1;
+		// force selectOutputDevice() to (re)start the synth
+		this.outputDevice = -1;
+		this.selectOutputDevice(-1);
+		this.selectInputDevice(-1);
+	}
+
+	/**
+	 * The offline device's output stream blocks the synthesis thread in between 
+	 * render() calls, so it needs to be unblocked before the synth can be stopped
+	 */
+	private void releaseSynthesisThread() {
+		if (this.isUsingVirtualDevice()) {
+			((JSynVirtualAudioDeviceManager) this.synth.getAudioDeviceManager()).release();
+		}
+	}
+
 	/**
 	 * Stop the synthesizer and remove all ChannelOuts
 	 */
 	private void stopSynth() {
 		if (this.synth.isRunning()) {
+			this.releaseSynthesisThread();
 			this.synth.stop();
+			this.profiler.stop();
+			this.synth.remove(this.profiler);
 			// TODO clean up old outputs/volumes/entire synth network (if any)?
 			for (ChannelOut c : this.output) {
 				c.stop();
@@ -250,6 +366,12 @@ class Engine {
 		// *always* purge the entire synth and not just stop/start it...
 		this.stopSynth();
 
+		// needs to be started before the ChannelOuts so that it gets to pull (and 
+		// time) the units before they do
+		this.synth.add(this.profiler);
+		this.profiler.setOfflineDevice(this.isRenderingOffline() ? (JSynVirtualAudioDeviceManager) this.synth.getAudioDeviceManager() : null);
+		this.profiler.start();
+
 		this.output = new ChannelOut[this.synth.getAudioDeviceManager().getMaxOutputChannels(this.outputDevice)];
 		this.volume = new Multiply[this.synth.getAudioDeviceManager().getMaxOutputChannels(this.outputDevice)];
 		for (int i = 0; i < this.output.length; i++) {
@@ -264,12 +386,69 @@ class Engine {
 		}
 		this.setVolume(1.0f);
 
+		this.startSynthesisThread();
+	}
+
+	/**
+	 * Open the audio device streams and start synthesizing
+	 */
+	private void startSynthesisThread() {
+		// the suggested latencies are only taken into account when the device 
+		// streams are (re)opened
+		if (this.suggestedOutputLatency > 0) {
+			this.synth.getAudioDeviceManager().setSuggestedOutputLatency(this.suggestedOutputLatency);
+		}
+		if (this.suggestedInputLatency > 0) {
+			this.synth.getAudioDeviceManager().setSuggestedInputLatency(this.suggestedInputLatency);
+		}
+		// offline and free-running virtual devices can't underrun
+		this.underrunMonitor.start(this.sampleRate, !this.isUsingVirtualDevice() || ((JSynVirtualAudioDeviceManager) this.synth.getAudioDeviceManager()).isClocked());
 		// prevent IndexOutOfBoundsException on input-less devices
 		int inputChannels = this.inputDevice >= 0 ?
 			this.synth.getAudioDeviceManager().getMaxInputChannels(this.inputDevice) : 0;
 		this.synth.start(this.sampleRate,
 				this.inputDevice, inputChannels,
 				this.outputDevice, this.synth.getAudioDeviceManager().getMaxOutputChannels(this.outputDevice));
+		this.underrunMonitor.setLatency(this.synth.getOutputLatency());
+	}
+
+	/**
+	 * Set the latency of the audio device streams, in seconds. Values of 0 or 
+	 * less revert to the device's default low latency. If the synthesizer is 
+	 * already running, the device streams are closed and reopened without 
+	 * changing the synthesis network, so that all sounds keep on playing.
+	 */
+	protected void setLatency(double outputLatency, double inputLatency) {
+		AudioDeviceManager manager = this.synth.getAudioDeviceManager();
+		this.suggestedOutputLatency = outputLatency;
+		this.suggestedInputLatency = inputLatency;
+		if (outputLatency <= 0 && this.outputDevice >= 0) {
+			manager.setSuggestedOutputLatency(manager.getDefaultLowOutputLatency(this.outputDevice));
+		}
+		if (inputLatency <= 0 && this.inputDevice >= 0) {
+			manager.setSuggestedInputLatency(manager.getDefaultLowInputLatency(this.inputDevice));
+		}
+		if (this.synth.isRunning()) {
+			this.releaseSynthesisThread();
+			this.synth.stop();
+			this.startSynthesisThread();
+		}
+	}
+
+	/**
+	 * @return the output latency actually granted by the audio device, in 
+	 * seconds
+	 */
+	protected double getOutputLatency() {
+		return this.synth.getOutputLatency();
+	}
+
+	/**
+	 * @return the input latency actually granted by the audio device, in 
+	 * seconds (0 if no input device is open)
+	 */
+	protected double getInputLatency() {
+		return this.inputDevice >= 0 ? this.synth.getInputLatency() : 0;
 	}
 
 
@@ -365,11 +544,11 @@ class Engine {
 		if (deviceId == -1) {
 			// if the default device does not work, loop through
 			try {
-				return this.selectOutputDevice(IntStream.concat(
-							// FIXME sometimes the JPortAudioDevice throws a RuntimeException 
-							// "-1, possibly no available default device"
-							IntStream.of(this.synth.getAudioDeviceManager().getDefaultOutputDeviceID()),
-							IntStream.range(0, this.synth.getAudioDeviceManager().getDeviceCount())).toArray());
+				AudioDeviceManager manager = this.synth.getAudioDeviceManager();
+				// FIXME sometimes the JPortAudioDevice throws a RuntimeException 
+				// "-1, possibly no available default device"
+				return this.selectOutputDevice(IntStream.concat(IntStream.of(manager.getDefaultOutputDeviceID()),
+							IntStream.range(0, manager.getDeviceCount())).toArray());
 			} catch (RuntimeException e) {
 				// fatal
 				throw new RuntimeException("Could not find any supported audio devices with a stereo output");
@@ -386,26 +565,41 @@ class Engine {
 		// to throw IllegalArgumentException no matter what you probe it with), or 
 		// the JSynAndroidAudioDeviceManager (which does not support the JavaSound 
 		// classes used for probing)
+		// the results of probing (and of actually starting the synth) are cached 
+		// per driver, so that devices which worked before are used without 
+		// probing them again, and devices which failed with JavaSound are opened 
+		// with PortAudio right away
 		if (this.synth.getAudioDeviceManager() instanceof JavaSoundAudioDevice) {
 			// check for a working line first (since using PortAudio might change the 
 			// number of available channels)
-			try {
-				// TODO does this also work as expected if the device is currently 
-				// listed as having 0 output channels?
-				// if (this.synth.getAudioDeviceManager().getMaxOutputChannels(deviceId) == 0) {
-				// 	 Engine.printMessage(...);
-				// } else {
-				this.probeDeviceOutputLine(deviceId, this.sampleRate);
-				// all is well, move along to the bottom...
-			} catch (LineUnavailableException e) {
+			DeviceProbeCache probeCache = this.getProbeCache();
+			int cached = probeCache.getProbeResult(deviceId, this.sampleRate);
+			String failure = "failed on a previous run";
+			if (cached == DeviceProbeCache.UNKNOWN) {
+				try {
+					// TODO does this also work as expected if the device is currently 
+					// listed as having 0 output channels?
+					// if (this.synth.getAudioDeviceManager().getMaxOutputChannels(deviceId) == 0) {
+					// 	 Engine.printMessage(...);
+					// } else {
+					this.probeDeviceOutputLine(deviceId, this.sampleRate);
+					cached = DeviceProbeCache.WORKS;
+				} catch (LineUnavailableException e) {
+					cached = DeviceProbeCache.FAILS;
+					failure = e.getMessage();
+				}
+				probeCache.putProbeResult(deviceId, this.sampleRate, cached == DeviceProbeCache.WORKS);
+			}
+			// if it works, move along to the bottom...
+			if (cached == DeviceProbeCache.FAILS) {
 				// try portaudio access to the same device -- need get the name of the 
 				// old output device and re-select it on the new device manager
 				String targetDeviceName = this.getDeviceName(deviceId);
 				Engine.printMessage("Output device '" + targetDeviceName + "' did not work with the default audio driver, trying again with PortAudio...");
 				try {
 					this.usePortAudio(true);
-				} catch (RuntimeException ee) {
-					throw new RuntimeException(e);
+				} catch (RuntimeException e) {
+					throw new RuntimeException("output device '" + targetDeviceName + "' " + failure, e);
 				}
 				int newDeviceIdForOldDevice = this.synth.getAudioDeviceManager().getDefaultOutputDeviceID();
 				try {
@@ -427,14 +621,38 @@ class Engine {
 
 		// finally made it to the 'normal' output device selection code
 		if (this.checkDeviceHasOutputs(deviceId)) {
+			AudioDeviceManager manager = this.synth.getAudioDeviceManager();
+			boolean cacheable = manager instanceof JavaSoundAudioDevice || manager instanceof JPortAudioDevice;
+			if (manager instanceof JPortAudioDevice && this.getProbeCache().getProbeResult(deviceId, this.sampleRate) == DeviceProbeCache.FAILS) {
+				// a failed attempt might ruin the synth object for good, move on to 
+				// the next candidate
+				throw new RuntimeException("output device '" + this.getDeviceName(deviceId) + "' failed with PortAudio on a previous run");
+			}
 			this.outputDevice = deviceId;
-			this.startSynth();
+			try {
+				this.startSynth();
+			} catch (RuntimeException e) {
+				if (cacheable) {
+					this.getProbeCache().putProbeResult(deviceId, this.sampleRate, false);
+				}
+				throw e;
+			}
+			if (cacheable) {
+				this.getProbeCache().putProbeResult(deviceId, this.sampleRate, true);
+			}
 		} else {
 			Engine.printWarning("audio device '" + this.getDeviceName(deviceId) + "' has no stereo output channel");
 		}
 		return this.outputDevice;
 	}
 
+	private DeviceProbeCache getProbeCache() {
+		if (this.probeCache == null || !this.probeCache.isFor(this.synth.getAudioDeviceManager())) {
+			this.probeCache = new DeviceProbeCache(this.synth.getAudioDeviceManager());
+		}
+		return this.probeCache;
+	}
+
 	protected String getDeviceName(int deviceId) {
 		return this.isValidDeviceId(deviceId) ? this.synth.getAudioDeviceManager().getDeviceName(deviceId).trim() : "";
 	}
@@ -497,17 +715,114 @@ class Engine {
 		return this.synth.getFrameRate();
 	}
 
+	protected int getOutputChannels() {
+		return this.output.length;
+	}
+
+	// number of frames that are generated per call to the virtual device when 
+	// rendering into samples or files
+	private static final int RENDER_BLOCK_FRAMES = 1024;
+
+	// reused by all render() calls, which happen on the sketch thread
+	private double[] renderBuffer = new double[0];
+
+	private double[] getRenderBuffer(int length) {
+		if (this.renderBuffer.length < length) {
+			this.renderBuffer = new double[length];
+		}
+		return this.renderBuffer;
+	}
+
+	/**
+	 * Generate the given number of frames of audio as fast as possible and write 
+	 * them into the buffer, interleaved with as many channels as the output 
+	 * device has.
+	 */
+	protected boolean render(double[] buffer, int frames) {
+		if (!this.isRenderingOffline()) {
+			Engine.printError("rendering is only possible in offline mode, call Sound.useOfflineRendering() first");
+			return false;
+		}
+		return ((JSynVirtualAudioDeviceManager) this.synth.getAudioDeviceManager()).render(buffer, 0, frames * this.getOutputChannels());
+	}
+
+	/**
+	 * Render as many frames as fit into the given array, interleaved with as 
+	 * many channels as the output device has.
+	 */
+	protected boolean render(float[] target) {
+		int frames = target.length / this.getOutputChannels();
+		double[] buffer = this.getRenderBuffer(frames * this.getOutputChannels());
+		if (!this.render(buffer, frames)) {
+			return false;
+		}
+		for (int i = 0; i < frames * this.getOutputChannels(); i++) {
+			target[i] = (float) buffer[i];
+		}
+		return true;
+	}
+
+	/**
+	 * Render as many frames as fit into the given sample. If the sample has fewer 
+	 * channels than the output only the first channel(s) are kept, if it has more 
+	 * then the output channels are repeated.
+	 */
+	protected boolean render(FloatSample target) {
+		int channels = this.getOutputChannels();
+		int targetChannels = target.getChannelsPerFrame();
+		double[] block = this.getRenderBuffer(Engine.RENDER_BLOCK_FRAMES * channels);
+		float[] converted = new float[Engine.RENDER_BLOCK_FRAMES * targetChannels];
+		for (int frame = 0; frame < target.getNumFrames(); frame += Engine.RENDER_BLOCK_FRAMES) {
+			int n = Math.min(Engine.RENDER_BLOCK_FRAMES, target.getNumFrames() - frame);
+			if (!this.render(block, n)) {
+				return false;
+			}
+			for (int i = 0; i < n; i++) {
+				for (int c = 0; c < targetChannels; c++) {
+					converted[i * targetChannels + c] = (float) block[i * channels + c % channels];
+				}
+			}
+			target.write(frame, converted, 0, n);
+		}
+		return true;
+	}
+
+	/**
+	 * Render the given number of frames straight into a 16 bit WAV file, without 
+	 * keeping the rendered audio in memory.
+	 */
+	protected boolean render(File file, long frames) throws IOException {
+		int channels = this.getOutputChannels();
+		double[] block = this.getRenderBuffer(Engine.RENDER_BLOCK_FRAMES * channels);
+		WaveFileWriter writer = new WaveFileWriter(file);
+		writer.setFrameRate(this.getSampleRate());
+		writer.setSamplesPerFrame(channels);
+		writer.setBitsPerSample(16);
+		try {
+			for (long frame = 0; frame < frames; frame += Engine.RENDER_BLOCK_FRAMES) {
+				int n = (int) Math.min(Engine.RENDER_BLOCK_FRAMES, frames - frame);
+				if (!this.render(block, n)) {
+					return false;
+				}
+				writer.write(block, 0, n * channels);
+			}
+		} finally {
+			writer.close();
+		}
+		return true;
+	}
+
 	protected void add(UnitGenerator generator) {
-		if (!this.addedUnits.contains(generator)) {
+		if (this.addedUnits.add(generator)) {
 			this.synth.add(generator);
-			this.addedUnits.add(generator);
+			this.profiler.register(generator);
 		}
 	}
 
 	protected void remove(UnitGenerator generator) {
-		if (this.addedUnits.contains(generator)) {
+		if (this.addedUnits.remove(generator)) {
 			this.synth.remove(generator);
-			this.addedUnits.remove(generator);
+			this.profiler.unregister(generator);
 		}
 	}
 
@@ -567,7 +882,9 @@ class Engine {
 	 */
 	public class Callback {
 		public void dispose() {
+			releaseSynthesisThread();
 			synth.stop();
+			profiler.setThreads(1);
 			// TODO suppress shutdown messages on Mac, like:
 			// JPortAudio: 64-bit
 			// requestedFramesPerBuffer = 128, coreAudioBufferSizeFrames = 384
@@ -584,6 +901,8 @@ class Engine {
 	}
 
 	private Callback registeredCallback;
+	// needed to resolve file paths relative to the sketch folder
+	protected PApplet parent;
 
 	/**
 	 * Register a callback with the sketch PApplet, so that the synth thread is stopped when the sketch is finished.
@@ -592,12 +911,14 @@ class Engine {
 		if (this.registeredCallback != null) {
 			return;
 		}
+		this.parent = theParent;
 		// register Processing library callback methods
 		this.registeredCallback = new Callback();
 		theParent.registerMethod("dispose", this.registeredCallback);
 		// Android only
 		theParent.registerMethod("pause", this.registeredCallback);
 		theParent.registerMethod("resume", this.registeredCallback);
+		this.underrunMonitor.registerEventMethod(theParent);
 	}
 
 	protected static void setModulation(UnitInputPort port, Modulator modulator) {
@@ -607,6 +928,7 @@ class Engine {
 			port.setValueAdded(true);
 			port.connect(modulator.getModulator());
 		}
+		JSynProfiler.graphChanged();
 	}
 
 	// static helper methods that do stuff like checking argument values or 
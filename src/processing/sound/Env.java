@@ -39,7 +39,7 @@ public class Env {
 
 		// fire-and-forget envelope player
 		VariableRateMonoReader player = new VariableRateMonoReader();
-		Engine.getEngine().add(player);
+		input.engine.add(player);
 		// we need to start the player explicitly, otherwise if it gets disconnected 
 		// by another envelope kicking in before it has completed, it would stop 
 		// prematurely and the callback (which removes it from the synth for garbage 
@@ -48,6 +48,7 @@ public class Env {
 
 		input.amplitude.disconnectAll();
 		player.output.connect(input.amplitude);
+		JSynProfiler.graphChanged();
 		if (!input.isPlaying()) {
 			input.play();
 		}
@@ -66,7 +67,7 @@ public class Env {
 					// collected? should we trigger the object's stop() as well?
 					input.amplitude.set(0);
 				}
-				Engine.getEngine().remove(player);
+				input.engine.remove(player);
 			}
 			public void looped(QueueDataEvent event) {
 			}
@@ -0,0 +1,76 @@
+package processing.sound;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jsyn.Synthesizer;
+
+/**
+ * Runs events at given frame times on the synthesis thread. Events are handed 
+ * over from other threads through a lock-free queue, and sorted into a 
+ * priority queue by the synthesis thread itself at the start of every block. 
+ * Events are run at the start of the block that contains their frame, so they 
+ * are accurate to within one block (Synthesizer.FRAMES_PER_BLOCK frames). 
+ * JSyn's own Synthesizer.scheduleCommand() is no more accurate than that, 
+ * since it also runs commands between blocks, but hands them over through a 
+ * synchronized queue.
+ */
+class EventScheduler implements Runnable {
+
+	private static class Event implements Comparable<Event> {
+		private final long frame;
+		// keeps events that are scheduled for the same frame in order
+		private final long sequence;
+		private final Runnable action;
+
+		Event(long frame, long sequence, Runnable action) {
+			this.frame = frame;
+			this.sequence = sequence;
+			this.action = action;
+		}
+
+		public int compareTo(Event other) {
+			int c = Long.compare(this.frame, other.frame);
+			return c != 0 ? c : Long.compare(this.sequence, other.sequence);
+		}
+	}
+
+	private final Engine engine;
+
+	private final ConcurrentLinkedQueue<Event> incoming = new ConcurrentLinkedQueue<Event>();
+	// only accessed by the synthesis thread
+	private final PriorityQueue<Event> pending = new PriorityQueue<Event>();
+	private final AtomicLong sequence = new AtomicLong();
+
+	EventScheduler(Engine engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * Schedule an action to be run on the synthesis thread when the synthesis 
+	 * reaches the given frame. Events whose frame has already passed are run at 
+	 * the start of the next block.
+	 */
+	void schedule(long frame, Runnable action) {
+		this.incoming.add(new Event(frame, this.sequence.getAndIncrement(), action));
+	}
+
+	/**
+	 * Called by the synthesizer at the start of every block
+	 */
+	public void run() {
+		Event e;
+		while ((e = this.incoming.poll()) != null) {
+			this.pending.add(e);
+		}
+		long blockEnd = this.engine.synth.getFrameCount() + Synthesizer.FRAMES_PER_BLOCK;
+		while (!this.pending.isEmpty() && this.pending.peek().frame < blockEnd) {
+			try {
+				this.pending.poll().action.run();
+			} catch (RuntimeException ex) {
+				Engine.printError("error in scheduled event: " + ex.getMessage());
+			}
+		}
+	}
+}
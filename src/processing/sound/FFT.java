@@ -1,7 +1,6 @@
 package processing.sound;
 
 import com.jsyn.ports.UnitOutputPort;
-import com.softsynth.math.FourierMath;
 
 import processing.core.PApplet;
 
@@ -19,6 +18,9 @@ public class FFT extends Analyzer {
 
 	private JSynFFT fft;
 
+	// scratch memory for analyzeSample(), which can be called from any thread
+	private static final ThreadLocal<float[]> work = ThreadLocal.withInitial(() -> new float[0]);
+
 	public FFT(PApplet parent) {
 		this(parent, 512);
 	}
@@ -60,7 +62,7 @@ public class FFT extends Analyzer {
 
 	protected void setInput(UnitOutputPort input) {
 		// superclass makes sure that input unit is actually playing, just connect it
-		Engine.getEngine().add(this.fft);
+		this.engine.add(this.fft);
 		this.fft.input.connect(input);
 		this.fft.start();
 	}
@@ -107,6 +109,9 @@ public class FFT extends Analyzer {
 	 * For stereo samples, you can call this function once for each channel, so you can display the left and right
 	 * fft values separately.<br>
 	 *
+	 * When analyzing many chunks of audio, pass the same target array every 
+	 * time, or use an <b>FFTPlan</b>, which can also apply a window function.<br>
+	 *
 	 * The values of the resulting array show the amplitudes of pure tone 
 	 * components contained in the signal. If the signal is a sine with an 
 	 * amplitude of 1, the spectrum will have an absolute value of 1 (0 dB) at the 
@@ -134,22 +139,23 @@ public class FFT extends Analyzer {
 	}
 
 	// the meat of the matter
-	protected static void calculateMagnitudesFromSample(float[] sample, float[] imaginary, float[] target) {
+	protected static void calculateMagnitudesFromSample(float[] sample, float[] work, float[] target) {
 		if (FFT.checkNumBands(target.length)) {
-			FourierMath.transform(1, target.length, sample, imaginary);
-			FourierMath.calculateMagnitudes(sample, imaginary, target);
-			// there is an argument for multiplying the normalized spectrum amplitude 
-			// values by two, see e.g.:
+			// the forward transform is normalized by 2/n, but there is an argument 
+			// for multiplying the normalized spectrum amplitude values by two, see e.g.:
 			// https://pyfar.readthedocs.io/en/stable/concepts/pyfar.fft.html#fft-normalizations
 			// https://de.mathworks.com/matlabcentral/answers/162846-amplitude-of-signal-after-fft-operation#answer_159088
-			for (int i = 0; i < target.length; i++) {
-				target[i] *= 2;
-			}
+			RealFFT.get(target.length).magnitudes(sample, 0, work, target, 4f / target.length);
 		}
 	}
 
 	protected static void calculateMagnitudesFromSample(float[] sample, float[] target) {
-		FFT.calculateMagnitudesFromSample(sample, new float[sample.length], target);
+		float[] work = FFT.work.get();
+		if (work.length < target.length) {
+			work = new float[target.length];
+			FFT.work.set(work);
+		}
+		FFT.calculateMagnitudesFromSample(sample, work, target);
 	}
 
 }
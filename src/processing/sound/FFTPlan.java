@@ -0,0 +1,146 @@
+package processing.sound;
+
+/**
+ * An FFTPlan computes the frequency spectrum of arrays of audio samples
+ * in non-real time, just like <b>FFT.analyzeSample()</b>, but holds on to
+ * all the tables and memory it needs, so that it can be used to analyze
+ * many chunks of audio (for example when rendering an animation frame by
+ * frame) without allocating any new memory. The sample data passed to it is
+ * never modified.<br>
+ * A plan can be used by one thread at a time. To analyze audio on several
+ * threads at once, create one plan per thread.
+ *
+ * @webref Analysis:FFTPlan
+ * @webBrief Computes the frequency spectrum of audio samples without
+ * allocating memory.
+ * @see FFT
+ **/
+public class FFTPlan {
+
+	public static final int RECTANGULAR = 0;
+	public static final int HANN = 1;
+	public static final int HAMMING = 2;
+
+	public float[] spectrum;
+
+	private final RealFFT fft;
+	private final float[] work;
+	private final float[] windowed;
+	private float[] window;
+
+	/**
+	 * @param bands
+	 *            number of frequency bands of the spectrum. This parameter needs
+	 *            to be a power of 2 (e.g. 16, 32, 64, 128, ...). Every analysis
+	 *            reads as many consecutive samples as there are bands.
+	 */
+	public FFTPlan(int bands) {
+		if (bands < 1 || Integer.bitCount(bands) != 1 || bands > 16384) {
+			Engine.printError("number of FFT bands needs to be a power of 2 no larger than 16384");
+			bands = Math.min(16384, Math.max(1, Integer.highestOneBit(bands)));
+		}
+		this.fft = RealFFT.get(bands);
+		this.work = new float[bands];
+		this.windowed = new float[bands];
+		this.spectrum = new float[bands];
+	}
+
+	/**
+	 * Set the window function that is applied to the samples before they are
+	 * analyzed. Applying a window reduces the spectral leakage between
+	 * neighbouring frequency bands. By default, no window is applied, which
+	 * gives the same results as <b>FFT.analyzeSample()</b>.
+	 *
+	 * @param window
+	 *            one of FFTPlan.RECTANGULAR (no window), FFTPlan.HANN or
+	 *            FFTPlan.HAMMING
+	 * @webref Analysis:FFTPlan
+	 * @webBrief Set the window function that is applied to the samples before
+	 * they are analyzed.
+	 **/
+	public void window(int window) {
+		int n = this.fft.size;
+		switch (window) {
+		case RECTANGULAR:
+			this.window = null;
+			break;
+		case HANN:
+		case HAMMING:
+			// the window's coefficients are identical to those of JSyn's
+			// HannWindow and HammingWindow
+			double alpha = window == HANN ? 0.5 : 0.54;
+			this.window = new float[n];
+			for (int i = 0; i < n; i++) {
+				this.window[i] = (float) (alpha - (1 - alpha) * Math.cos(2 * Math.PI * i / Math.max(1, n - 1)));
+			}
+			break;
+		default:
+			Engine.printError("window needs to be one of FFTPlan.RECTANGULAR, FFTPlan.HANN or FFTPlan.HAMMING");
+		}
+	}
+
+	/**
+	 * Returns the number of frequency bands of this plan.
+	 *
+	 * @return the number of frequency bands
+	 **/
+	public int bands() {
+		return this.fft.size;
+	}
+
+	public float[] analyze(float[] sample) {
+		return this.analyze(sample, 0, this.spectrum);
+	}
+
+	public float[] analyze(float[] sample, int offset) {
+		return this.analyze(sample, offset, this.spectrum);
+	}
+
+	public float[] analyze(float[] sample, float[] target) {
+		return this.analyze(sample, 0, target);
+	}
+
+	/**
+	 * Calculates the frequency spectrum of a chunk of the given audio sample,
+	 * and returns an array of magnitudes, one for each frequency band. The
+	 * magnitudes are normalized in the same way as those of
+	 * <b>FFT.analyzeSample()</b>.
+	 *
+	 * @param sample
+	 *            an array of numbers that describe the waveform to be analyzed.
+	 *            Its contents are not modified.
+	 * @param offset
+	 *            index of the first sample to be analyzed (default 0)
+	 * @param target
+	 *            if provided, writes the frequency spectrum into the given array,
+	 *            which needs to have as many elements as this plan's number of
+	 *            frequency bands. Otherwise, the spectrum is written to the
+	 *            plan's own <b>spectrum</b> array, which is overwritten by the
+	 *            next call.
+	 * @return the frequency spectrum of the given chunk of audio
+	 * @webref Analysis:FFTPlan
+	 * @webBrief Calculates the frequency spectrum of a chunk of an audio
+	 * sample.
+	 **/
+	public float[] analyze(float[] sample, int offset, float[] target) {
+		int n = this.fft.size;
+		if (offset < 0 || offset + n > sample.length) {
+			Engine.printError("the sample needs to have at least " + n + " values after the offset");
+			return target;
+		}
+		if (target.length < n) {
+			Engine.printError("the target array needs to have at least " + n + " elements");
+			return target;
+		}
+		// same normalization as FFT.calculateMagnitudesFromSample()
+		if (this.window == null) {
+			this.fft.magnitudes(sample, offset, this.work, target, 4f / n);
+		} else {
+			for (int i = 0; i < n; i++) {
+				this.windowed[i] = sample[offset + i] * this.window[i];
+			}
+			this.fft.magnitudes(this.windowed, 0, this.work, target, 4f / n);
+		}
+		return target;
+	}
+}
@@ -0,0 +1,82 @@
+package processing.sound;
+
+/**
+ * A FloatSample whose data is split into fixed-size chunks rather than held
+ * in one contiguous array. It can therefore grow while a sound file of
+ * unknown length is being decoded, without ever copying the data that has
+ * already been decoded.
+ */
+class JSynChunkedSample extends JSynEncodedSample {
+
+	private static final int CHUNK_BITS = 16;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private float[][] chunks = new float[0][];
+	// number of sample values (frames * channels) held
+	private int length = 0;
+
+	JSynChunkedSample(int channelsPerFrame) {
+		this.setChannelsPerFrame(channelsPerFrame);
+		this.setNumFrames(0);
+	}
+
+	/**
+	 * Append the given sample values (interleaved if the sample is stereo)
+	 */
+	void append(float[] data, int offset, int length) {
+		int end = this.length + length;
+		int chunksNeeded = (end + CHUNK_MASK) >> CHUNK_BITS;
+		if (chunksNeeded > this.chunks.length) {
+			float[][] chunks = new float[Math.max(chunksNeeded, 2 * this.chunks.length)][];
+			System.arraycopy(this.chunks, 0, chunks, 0, this.chunks.length);
+			this.chunks = chunks;
+		}
+		while (length > 0) {
+			int chunk = this.length >> CHUNK_BITS;
+			if (this.chunks[chunk] == null) {
+				this.chunks[chunk] = new float[CHUNK_SIZE];
+			}
+			int index = this.length & CHUNK_MASK;
+			int n = Math.min(length, CHUNK_SIZE - index);
+			System.arraycopy(data, offset, this.chunks[chunk], index, n);
+			offset += n;
+			length -= n;
+			this.length += n;
+		}
+		this.setNumFrames(this.length / this.getChannelsPerFrame());
+	}
+
+	public void allocate(int numFrames, int channelsPerFrame) {
+		// FloatSample constructors may allocate a buffer before the chunks
+		// are initialised
+		if (this.chunks == null) {
+			return;
+		}
+		this.length = numFrames * channelsPerFrame;
+		this.chunks = new float[(this.length + CHUNK_MASK) >> CHUNK_BITS][];
+		for (int i = 0; i < this.chunks.length; i++) {
+			this.chunks[i] = new float[CHUNK_SIZE];
+		}
+		this.setChannelsPerFrame(channelsPerFrame);
+		this.setNumFrames(numFrames);
+	}
+
+	public double readDouble(int index) {
+		return this.chunks[index >> CHUNK_BITS][index & CHUNK_MASK];
+	}
+
+	public void writeDouble(int index, double value) {
+		this.chunks[index >> CHUNK_BITS][index & CHUNK_MASK] = (float) value;
+	}
+
+	long getBytes() {
+		long bytes = 0;
+		for (float[] chunk : this.chunks) {
+			if (chunk != null) {
+				bytes += 4L * chunk.length;
+			}
+		}
+		return bytes;
+	}
+}
@@ -38,6 +38,10 @@ public class JSynCircuit extends Circuit implements UnitSource {
 		this.wireBypass();
 	}
 
+	protected UnitGenerator getSource() {
+		return this.source;
+	}
+
 	protected void wireBypass() {
 		this.preEffect.connect(0, this.output.inputA, 0);
 		this.preEffect.connect(1, this.output.inputB, 0);
@@ -51,6 +55,7 @@ public class JSynCircuit extends Circuit implements UnitSource {
 			this.effect.left.input.disconnect(0, this.preEffect, 0);
 			this.effect.right.input.disconnect(0, this.preEffect, 1);
 			this.effect = null;
+			JSynProfiler.graphChanged();
 		}
 	}
 
@@ -64,6 +69,7 @@ public class JSynCircuit extends Circuit implements UnitSource {
 
 		this.effect.right.output.connect(this.output.inputB);
 		this.preEffect.disconnect(1, this.output.inputB, 0);
+		JSynProfiler.graphChanged();
 	}
 
 	@Override
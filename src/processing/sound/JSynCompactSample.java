@@ -0,0 +1,138 @@
+package processing.sound;
+
+import com.jsyn.data.FloatSample;
+
+/**
+ * A FloatSample which stores its data with 16 bits (linear) or 8 bits
+ * (mu-law) per sample instead of 32 bit floats, converting on the fly.
+ */
+class JSynCompactSample extends JSynEncodedSample {
+
+	// bits per sample of newly loaded or created samples (32 stores them as
+	// regular FloatSamples), read once when a load or creation is started so
+	// that later changes don't affect it halfway
+	protected static volatile int bits = 32;
+
+	private static final int MULAW_BIAS = 0x84;
+	private static final int MULAW_CLIP = 32635;
+	private static final float[] MULAW_DECODE = new float[256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			int u = ~i;
+			int exponent = (u >> 4) & 0x07;
+			int mantissa = u & 0x0F;
+			int sample = (((mantissa << 3) + MULAW_BIAS) << exponent) - MULAW_BIAS;
+			MULAW_DECODE[i] = ((u & 0x80) != 0 ? -sample : sample) / 32768f;
+		}
+	}
+
+	// only one of them is used, depending on the number of bits
+	private short[] shorts;
+	private byte[] bytes;
+	private final int bitsPerSample;
+
+	private JSynCompactSample(int numFrames, int channelsPerFrame, int bitsPerSample) {
+		this.bitsPerSample = bitsPerSample;
+		this.allocate(numFrames, channelsPerFrame);
+	}
+
+	/**
+	 * Create a sample holding the given data, in the currently selected
+	 * storage format
+	 */
+	static FloatSample create(float[] data, int channelsPerFrame) {
+		return JSynCompactSample.create(data, channelsPerFrame, JSynCompactSample.bits);
+	}
+
+	static FloatSample create(float[] data, int channelsPerFrame, int bits) {
+		if (bits == 32) {
+			return new FloatSample(data, channelsPerFrame);
+		}
+		JSynCompactSample sample = new JSynCompactSample(data.length / channelsPerFrame, channelsPerFrame, bits);
+		sample.write(data);
+		return sample;
+	}
+
+	static FloatSample create(int numFrames, int channelsPerFrame) {
+		return JSynCompactSample.create(numFrames, channelsPerFrame, JSynCompactSample.bits);
+	}
+
+	static FloatSample create(int numFrames, int channelsPerFrame, int bits) {
+		if (bits == 32) {
+			return new FloatSample(numFrames, channelsPerFrame);
+		}
+		return new JSynCompactSample(numFrames, channelsPerFrame, bits);
+	}
+
+	/**
+	 * Convert a (decoded) FloatSample into the given storage format, or return
+	 * it as is if it is already stored compactly (or memory-mapped)
+	 */
+	static FloatSample convert(FloatSample sample, int bits) {
+		if (bits == 32 || sample instanceof JSynCompactSample || sample instanceof JSynMappedSample) {
+			return sample;
+		}
+		int channels = sample.getChannelsPerFrame();
+		FloatSample converted = JSynCompactSample.create(sample.getNumFrames(), channels, bits);
+		converted.setFrameRate(sample.getFrameRate());
+		// convert block by block to avoid a temporary copy of the whole sample
+		float[] buffer = new float[4096 * channels];
+		for (int frame = 0; frame < sample.getNumFrames(); frame += 4096) {
+			int n = Math.min(4096, sample.getNumFrames() - frame);
+			sample.read(frame, buffer, 0, n);
+			converted.write(frame, buffer, 0, n);
+		}
+		return converted;
+	}
+
+	private static byte encodeMulaw(double value) {
+		int pcm = (int) Math.round(Math.max(-1.0, Math.min(value, 1.0)) * 32767);
+		int sign = 0;
+		if (pcm < 0) {
+			sign = 0x80;
+			pcm = -pcm;
+		}
+		pcm = Math.min(pcm, MULAW_CLIP) + MULAW_BIAS;
+		int exponent = 7;
+		for (int mask = 0x4000; (pcm & mask) == 0 && exponent > 0; mask >>= 1) {
+			exponent--;
+		}
+		int mantissa = (pcm >> (exponent + 3)) & 0x0F;
+		return (byte) ~(sign | (exponent << 4) | mantissa);
+	}
+
+	public void allocate(int numFrames, int channelsPerFrame) {
+		// FloatSample constructors may allocate a buffer before the number of
+		// bits is known
+		if (this.bitsPerSample == 0) {
+			return;
+		}
+		if (this.bitsPerSample == 16) {
+			this.shorts = new short[numFrames * channelsPerFrame];
+		} else {
+			this.bytes = new byte[numFrames * channelsPerFrame];
+		}
+		this.setChannelsPerFrame(channelsPerFrame);
+		this.setNumFrames(numFrames);
+	}
+
+	public double readDouble(int index) {
+		if (this.shorts != null) {
+			return this.shorts[index] / 32768.0;
+		}
+		return MULAW_DECODE[this.bytes[index] & 0xFF];
+	}
+
+	public void writeDouble(int index, double value) {
+		if (this.shorts != null) {
+			this.shorts[index] = (short) Math.round(Math.max(-1.0, Math.min(value, 32767 / 32768.0)) * 32768);
+		} else {
+			this.bytes[index] = JSynCompactSample.encodeMulaw(value);
+		}
+	}
+
+	long getBytes() {
+		return this.shorts != null ? 2L * this.shorts.length : this.bytes.length;
+	}
+}
@@ -53,8 +53,8 @@ class JSynDelay extends UnitFilter {
 		this.feedback.inputA.set(feedback);
 	}
 
-	protected void setMaxDelayTime(float maxDelayTime) {
-		int maxSamples = (int) (Engine.getEngine().getSampleRate() * maxDelayTime);
+	protected void setMaxDelayTime(float maxDelayTime, int sampleRate) {
+		int maxSamples = (int) (sampleRate * maxDelayTime);
 		this.delay.allocate(maxSamples);
 	}
 }
@@ -0,0 +1,69 @@
+package processing.sound;
+
+import com.jsyn.data.FloatSample;
+
+/**
+ * Common superclass of FloatSamples which don't store their data as a float
+ * array, but in some other form that is converted to and from float in
+ * readDouble() and writeDouble(). The sample readers only ever use those two
+ * methods, the bulk read() and write() methods used by AudioSample are
+ * implemented on top of them.
+ */
+abstract class JSynEncodedSample extends FloatSample {
+
+	public abstract double readDouble(int index);
+
+	public abstract void writeDouble(int index, double value);
+
+	/**
+	 * @return the number of bytes of memory taken up by the sample data
+	 */
+	abstract long getBytes();
+
+	public void read(int startFrame, float[] data, int startIndex, int numFrames) {
+		int channels = this.getChannelsPerFrame();
+		int start = startFrame * channels;
+		for (int i = 0; i < numFrames * channels; i++) {
+			data[startIndex + i] = (float) this.readDouble(start + i);
+		}
+	}
+
+	public void read(float[] data) {
+		this.read(0, data, 0, data.length / this.getChannelsPerFrame());
+	}
+
+	public void write(int startFrame, float[] data, int startIndex, int numFrames) {
+		int channels = this.getChannelsPerFrame();
+		int start = startFrame * channels;
+		for (int i = 0; i < numFrames * channels; i++) {
+			this.writeDouble(start + i, data[startIndex + i]);
+		}
+	}
+
+	public void write(float[] data) {
+		this.write(0, data, 0, data.length / this.getChannelsPerFrame());
+	}
+
+	public double interpolate(double fractionalIndex) {
+		int index = (int) fractionalIndex;
+		double fraction = fractionalIndex - index;
+		double current = this.readDouble(index);
+		double next = index + 1 < this.getNumFrames() * this.getChannelsPerFrame() ? this.readDouble(index + 1) : current;
+		return current + (fraction * (next - current));
+	}
+
+	public int getMaxFrames() {
+		return this.getNumFrames();
+	}
+
+	/**
+	 * Returns a copy of the sample data, converted to float. Unlike with a
+	 * plain FloatSample, changes to the returned array are not written back
+	 * to the sample, use write() or writeDouble() for that.
+	 */
+	public float[] getBuffer() {
+		float[] data = new float[this.getNumFrames() * this.getChannelsPerFrame()];
+		this.read(data);
+		return data;
+	}
+}
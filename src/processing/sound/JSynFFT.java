@@ -1,7 +1,5 @@
 package processing.sound;
 
-import java.util.Arrays;
-
 import com.jsyn.data.FloatSample;
 import com.jsyn.data.HannWindow;
 import com.jsyn.data.SpectralWindow;
@@ -15,33 +13,70 @@ class JSynFFT extends FixedRateMonoWriter {
 
 	private FloatSample buffer;
 	private float[] real;
-	private float[] imaginary;
+	private float[] work;
+	// transform used by the FFT analyzer, which analyzes half the window.
+	// resolved up front so that analyze() never has to wait for another
+	// thread that is computing the tables of a new transform size
+	private final RealFFT transform;
 
 	private SpectralWindow window;
 
 	protected JSynFFT(int bufferSize) {
+		this(bufferSize, bufferSize);
+	}
+
+	/**
+	 * @param windowSize
+	 *            number of samples that are transformed
+	 * @param bufferSize
+	 *            number of most recent samples that are kept, at least the
+	 *            window size
+	 */
+	protected JSynFFT(int windowSize, int bufferSize) {
 		super();
 		this.buffer = new FloatSample(bufferSize);
-		this.real = new float[bufferSize];
-		this.imaginary = new float[bufferSize];
-		this.window = new HannWindow(bufferSize);
+		this.real = new float[windowSize];
+		this.work = new float[windowSize];
+		this.window = new HannWindow(windowSize);
+		this.transform = RealFFT.get(Math.max(1, windowSize / 2));
 
 		// write any connected input into the output buffer ad infinitum
 		this.dataQueue.queueLoop(this.buffer);
 	}
 
 	protected void calculateMagnitudes(float[] target) {
-		// get position currently being written to
-		int pos = (int) this.dataQueue.getFrameCount() % this.buffer.getNumFrames();
-		this.buffer.read(pos, this.real, 0, this.buffer.getNumFrames() - pos);
-		this.buffer.read(0, this.real, this.buffer.getNumFrames() - pos, pos);
+		this.readWindowed(this.real);
+		if (target.length == this.transform.size) {
+			// same normalization as FFT.calculateMagnitudesFromSample()
+			this.transform.magnitudes(this.real, 0, this.work, target, 4f / target.length);
+		} else {
+			FFT.calculateMagnitudesFromSample(this.real, this.work, target);
+		}
+	}
+
+	protected void readWindowed(float[] target) {
+		this.readWindowed(target, 0);
+	}
+
+	/**
+	 * Copy the most recent input into target, oldest sample first, and apply
+	 * the window
+	 * @param delay
+	 *            number of most recently written samples to leave out
+	 */
+	protected void readWindowed(float[] target, int delay) {
+		int frames = this.buffer.getNumFrames();
+		// position right after the last sample of the window
+		int end = (int) Math.floorMod(this.dataQueue.getFrameCount() - delay, (long) frames);
+		int start = (end - target.length + frames) % frames;
+		int first = Math.min(target.length, frames - start);
+		this.buffer.read(start, target, 0, first);
+		this.buffer.read(0, target, first, target.length - first);
 		if (this.window != null) {
-			for (int i = 0; i < this.real.length; i++) {
-				this.real[i] *= this.window.get(i);
+			for (int i = 0; i < target.length; i++) {
+				target[i] *= this.window.get(i);
 			}
 		}
-		Arrays.fill(this.imaginary, 0);
-		FFT.calculateMagnitudesFromSample(this.real, this.imaginary, target);
 	}
 
 }
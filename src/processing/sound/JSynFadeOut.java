@@ -0,0 +1,61 @@
+package processing.sound;
+
+import com.jsyn.ports.UnitOutputPort;
+
+/**
+ * Short linear fade-out which is applied to the output of a sample reader, 
+ * so that voices can be cut off without clicking (see AudioSample.voices()).
+ */
+class JSynFadeOut {
+
+	protected static final double FADE_TIME = 0.005;
+
+	private volatile boolean fading = false;
+	private volatile double gain = 1;
+	private double step;
+
+	/**
+	 * Start fading out, called from outside the synthesis thread
+	 */
+	void start(double frameRate) {
+		this.step = 1 / (JSynFadeOut.FADE_TIME * frameRate);
+		this.gain = 1;
+		this.fading = true;
+	}
+
+	void reset() {
+		this.fading = false;
+		this.gain = 1;
+	}
+
+	boolean isFading() {
+		return this.fading;
+	}
+
+	double gain() {
+		return this.gain;
+	}
+
+	boolean isSilent() {
+		return this.fading && this.gain <= 0;
+	}
+
+	/**
+	 * Called from the reader's generate() method on the synthesis thread
+	 */
+	void apply(UnitOutputPort output, int start, int limit) {
+		if (!this.fading) {
+			return;
+		}
+		double gain = this.gain;
+		for (int part = 0; part < output.getNumParts(); part++) {
+			double[] values = output.getValues(part);
+			gain = this.gain;
+			for (int i = start; i < limit; i++) {
+				gain = Math.max(0, gain - this.step);
+				values[i] *= gain;
+			}
+		}
+		this.gain = gain;
+	}
+}
@@ -0,0 +1,230 @@
+package processing.sound;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A FloatSample whose data is not held in a Java array but read directly
+ * from a memory-mapped, uncompressed WAV or AIFF file, converting samples to
+ * float on the fly. The mapping is read-only, the operating system shares
+ * the pages between all processes that map the same file.
+ */
+class JSynMappedSample extends JSynEncodedSample {
+
+	protected static boolean enabled = false;
+
+	// files are mapped in segments of 1GB (a MappedByteBuffer can't be larger
+	// than 2GB), which overlap so that no sample straddles two segments
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+	private static final int SEGMENT_OVERLAP = 8;
+
+	private static final int FORMAT_PCM = 1;
+	private static final int FORMAT_FLOAT = 3;
+	private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+	private final ByteBuffer[] segments;
+	private final long dataOffset;
+	private final int bytesPerSample;
+	private final boolean isFloat;
+	// 8 bit WAV data is unsigned, everything else is signed
+	private final boolean isUnsigned;
+
+	private JSynMappedSample(FileChannel channel, long dataOffset, long dataLength, int channels, int bitsPerSample, boolean isFloat, ByteOrder order, float frameRate) throws IOException {
+		this.dataOffset = dataOffset;
+		this.bytesPerSample = bitsPerSample / 8;
+		this.isFloat = isFloat;
+		this.isUnsigned = bitsPerSample == 8 && order == ByteOrder.LITTLE_ENDIAN;
+
+		long frames = dataLength / (this.bytesPerSample * channels);
+		if (frames * channels > Integer.MAX_VALUE) {
+			throw new IOException("sound file is too long");
+		}
+
+		long end = dataOffset + frames * channels * this.bytesPerSample;
+		this.segments = new ByteBuffer[(int) ((end - 1) >> SEGMENT_BITS) + 1];
+		for (int i = 0; i < this.segments.length; i++) {
+			long start = i * SEGMENT_SIZE;
+			long size = Math.min(SEGMENT_SIZE + SEGMENT_OVERLAP, end - start);
+			this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size).order(order);
+		}
+
+		this.setChannelsPerFrame(channels);
+		this.setNumFrames((int) frames);
+		this.setFrameRate(frameRate);
+	}
+
+	/**
+	 * Map the given file, or return null if it is not an uncompressed WAV or
+	 * AIFF file that can be read directly.
+	 */
+	static JSynMappedSample map(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			// the mapping stays valid after the channel is closed
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(12);
+			if (channel.read(header, 0) < 12) {
+				return null;
+			}
+			String riff = JSynMappedSample.fourCC(header, 0);
+			String type = JSynMappedSample.fourCC(header, 8);
+			if (riff.equals("RIFF") && type.equals("WAVE")) {
+				return JSynMappedSample.mapWave(channel);
+			} else if (riff.equals("FORM") && (type.equals("AIFF") || type.equals("AIFC"))) {
+				return JSynMappedSample.mapAiff(channel, type.equals("AIFC"));
+			}
+			return null;
+		}
+	}
+
+	private static JSynMappedSample mapWave(FileChannel channel) throws IOException {
+		ByteBuffer chunk = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+		long position = 12;
+		int format = -1, channels = 0, bits = 0;
+		float frameRate = 0;
+		while (position + 8 <= channel.size()) {
+			chunk.clear();
+			channel.read(chunk, position);
+			String id = JSynMappedSample.fourCC(chunk, 0);
+			long size = chunk.getInt(4) & 0xFFFFFFFFL;
+			if (id.equals("fmt ")) {
+				format = chunk.getShort(8) & 0xFFFF;
+				channels = chunk.getShort(10);
+				frameRate = chunk.getInt(12);
+				bits = chunk.getShort(22);
+				if (format == FORMAT_EXTENSIBLE && size >= 40 - 8) {
+					// first two bytes of the sub format GUID
+					format = chunk.getShort(32) & 0xFFFF;
+				}
+			} else if (id.equals("data")) {
+				if (!JSynMappedSample.isSupported(format == FORMAT_FLOAT, format == FORMAT_PCM || format == FORMAT_FLOAT, channels, bits)) {
+					return null;
+				}
+				size = Math.min(size, channel.size() - position - 8);
+				return new JSynMappedSample(channel, position + 8, size, channels, bits, format == FORMAT_FLOAT, ByteOrder.LITTLE_ENDIAN, frameRate);
+			}
+			// chunks are padded to an even number of bytes
+			position += 8 + size + (size & 1);
+		}
+		return null;
+	}
+
+	private static JSynMappedSample mapAiff(FileChannel channel, boolean isAifc) throws IOException {
+		ByteBuffer chunk = ByteBuffer.allocate(30).order(ByteOrder.BIG_ENDIAN);
+		long position = 12;
+		int channels = 0, bits = 0;
+		float frameRate = 0;
+		boolean isFloat = false;
+		ByteOrder order = ByteOrder.BIG_ENDIAN;
+		boolean isPcm = false;
+		while (position + 8 <= channel.size()) {
+			chunk.clear();
+			channel.read(chunk, position);
+			String id = JSynMappedSample.fourCC(chunk, 0);
+			long size = chunk.getInt(4) & 0xFFFFFFFFL;
+			if (id.equals("COMM")) {
+				channels = chunk.getShort(8);
+				bits = chunk.getShort(14);
+				frameRate = (float) JSynMappedSample.readExtended(chunk, 16);
+				isPcm = true;
+				if (isAifc) {
+					String compression = JSynMappedSample.fourCC(chunk, 26);
+					if (compression.equals("sowt")) {
+						order = ByteOrder.LITTLE_ENDIAN;
+					} else if (compression.equals("fl32")) {
+						isFloat = true;
+					} else if (!compression.equals("NONE")) {
+						isPcm = false;
+					}
+				}
+			} else if (id.equals("SSND")) {
+				if (!JSynMappedSample.isSupported(isFloat, isPcm, channels, bits)) {
+					return null;
+				}
+				int offset = chunk.getInt(8);
+				size = Math.min(size - 8 - offset, channel.size() - position - 16 - offset);
+				return new JSynMappedSample(channel, position + 16 + offset, size, channels, bits, isFloat, order, frameRate);
+			}
+			position += 8 + size + (size & 1);
+		}
+		return null;
+	}
+
+	private static boolean isSupported(boolean isFloat, boolean isPcm, int channels, int bits) {
+		if (!isPcm || channels < 1 || channels > 2) {
+			return false;
+		}
+		return isFloat ? bits == 32 : (bits == 8 || bits == 16 || bits == 24 || bits == 32);
+	}
+
+	private static String fourCC(ByteBuffer buffer, int index) {
+		char[] id = new char[4];
+		for (int i = 0; i < 4; i++) {
+			id[i] = (char) buffer.get(index + i);
+		}
+		return new String(id);
+	}
+
+	// the sample rate of AIFF files is stored as an 80 bit IEEE 754 extended
+	// precision number
+	private static double readExtended(ByteBuffer buffer, int index) {
+		int exponent = buffer.getShort(index) & 0x7FFF;
+		long mantissa = buffer.getLong(index + 2);
+		return (mantissa >>> 11) * Math.pow(2, exponent - 16383 - 52);
+	}
+
+	public double readDouble(int index) {
+		long position = this.dataOffset + (long) index * this.bytesPerSample;
+		ByteBuffer segment = this.segments[(int) (position >> SEGMENT_BITS)];
+		int i = (int) (position & (SEGMENT_SIZE - 1));
+		switch (this.bytesPerSample) {
+		case 1:
+			return this.isUnsigned ? ((segment.get(i) & 0xFF) - 128) / 128.0 : segment.get(i) / 128.0;
+		case 2:
+			return segment.getShort(i) / 32768.0;
+		case 3:
+			int value;
+			if (segment.order() == ByteOrder.LITTLE_ENDIAN) {
+				value = (segment.get(i) & 0xFF) | ((segment.get(i + 1) & 0xFF) << 8) | (segment.get(i + 2) << 16);
+			} else {
+				value = (segment.get(i + 2) & 0xFF) | ((segment.get(i + 1) & 0xFF) << 8) | (segment.get(i) << 16);
+			}
+			return value / 8388608.0;
+		default:
+			return this.isFloat ? segment.getFloat(i) : segment.getInt(i) / 2147483648.0;
+		}
+	}
+
+	private void printReadOnlyError() {
+		Engine.printError("sound files that are memory-mapped can't be written to");
+	}
+
+	public void writeDouble(int index, double value) {
+		this.printReadOnlyError();
+	}
+
+	public void write(int startFrame, float[] data, int startIndex, int numFrames) {
+		this.printReadOnlyError();
+	}
+
+	public void write(float[] data) {
+		this.printReadOnlyError();
+	}
+
+	long getBytes() {
+		// the data is not on the Java heap
+		return 0;
+	}
+
+	public void allocate(int numFrames, int channelsPerFrame) {
+		// FloatSample constructors may allocate an (empty) buffer, after that the
+		// mapped data is kept as it is (AudioSample.resize() checks for this)
+		if (this.segments != null) {
+			Engine.printError("sound files that are memory-mapped can't be resized");
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package processing.sound;
+
+import com.jsyn.unitgen.VariableRateMonoReader;
+
+/**
+ * A VariableRateMonoReader which can be faded out.
+ */
+class JSynMonoSampleReader extends VariableRateMonoReader {
+
+	protected final JSynFadeOut fade = new JSynFadeOut();
+
+	@Override
+	public void generate(int start, int limit) {
+		super.generate(start, limit);
+		this.fade.apply(this.output, start, limit);
+	}
+}
@@ -0,0 +1,407 @@
+package processing.sound;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+import com.jsyn.Synthesizer;
+import com.jsyn.ports.UnitInputPort;
+import com.jsyn.ports.UnitPort;
+import com.jsyn.unitgen.UnitFilter;
+import com.jsyn.unitgen.UnitGenerator;
+import com.jsyn.unitgen.UnitSource;
+
+/**
+ * Measures how long the synthesis thread spends on each of the units that are 
+ * added to the synthesizer through Engine.add(), as well as on every block as 
+ * a whole (which is reported to the UnderrunMonitor).
+ *
+ * The profiler is started before any of the ChannelOuts, so that every block 
+ * it can pull all registered units (and everything upstream of them) itself, 
+ * in the order in which they were added, measuring the time of each pull. 
+ * This only happens while profiling is turned on (which also makes the 
+ * UnderrunMonitor measure block times), otherwise the units are left to the 
+ * ChannelOuts. By 
+ * the time the ChannelOuts pull the same units again their output has already 
+ * been computed. Because units are typically added after their own inputs 
+ * (effects after their sound source, analyzers after their input), the time 
+ * of every pull is mostly the unit's own.
+ *
+ * When more than one synthesis thread is configured, SoundObject circuits which 
+ * don't depend on any other units (i.e. their sound source isn't modulated 
+ * and their effect isn't shared with any other sounds) are pulled in parallel 
+ * first, before all other units are pulled by the synthesis thread. To keep 
+ * the cost of waking up and waiting for the worker threads low, each of them 
+ * computes several blocks of its circuits at once, which are then handed to 
+ * the rest of the network one block at a time. Since JSyn never computes a 
+ * unit twice for the same (or an earlier) frame, the buffered output only 
+ * needs to be copied back into the circuit's output port. Which circuits are 
+ * independent is only worked out again after units were added or removed or 
+ * the connections between them changed (see graphChanged()).
+ *
+ * Since the profiler is the first unit to be pulled in every block, it is 
+ * also where the synthesis thread waits for render() calls when rendering 
+ * offline (see setOfflineDevice()).
+ */
+class JSynProfiler extends UnitGenerator {
+
+	/**
+	 * Accumulates timing of one registered unit, only written to by the 
+	 * synthesis thread.
+	 */
+	private static class Timing {
+		private final UnitGenerator unit;
+		private volatile long calls = 0;
+		private volatile long totalTime = 0;
+		private volatile long maxTime = 0;
+
+		// frame count of the last block that was already accounted for
+		private long lastFrameCount = -1;
+		// time spent on the current block, when it's measured in several parts
+		private long blockTime;
+
+		Timing(UnitGenerator unit) {
+			this.unit = unit;
+		}
+
+		void record(long time) {
+			this.calls++;
+			this.totalTime += time;
+			if (time > this.maxTime) {
+				this.maxTime = time;
+			}
+		}
+
+		void reset() {
+			this.calls = 0;
+			this.totalTime = 0;
+			this.maxTime = 0;
+		}
+	}
+
+	private volatile boolean enabled = false;
+
+	private final UnderrunMonitor monitor;
+
+	// only set when rendering offline
+	private volatile JSynVirtualAudioDeviceManager offlineDevice;
+
+	// replaced by a modified copy whenever a unit is added or removed (which 
+	// can also happen on the synthesis thread, from scheduled events), so that 
+	// the synthesis thread only ever sees complete copies of it without locking
+	private final AtomicReference<Map<UnitGenerator, Timing>> timings = new AtomicReference<Map<UnitGenerator, Timing>>(new LinkedHashMap<UnitGenerator, Timing>());
+
+	// number of blocks that the worker threads compute ahead in one go, which 
+	// delays parameter changes of the parallel sounds by up to 3 blocks
+	static final int BLOCKS_PER_BATCH = 4;
+
+	// counts up whenever connections that affect which circuits are 
+	// independent change, shared by all engines
+	private static final AtomicInteger graphVersion = new AtomicInteger();
+
+	// only set when using more than one thread
+	private SynthesisWorkers workers;
+	// circuits which can be pulled in parallel, and the unit map and graph 
+	// version they were determined from
+	private JSynCircuit[] independent = new JSynCircuit[0];
+	private int independentCount;
+	private Map<UnitGenerator, Timing> partitionTimings;
+	private int partitionVersion;
+	// output of every independent circuit for all blocks of the current 
+	// batch, and the next block of the batch to hand out
+	private double[][] batch = new double[0][];
+	private int batchBlock;
+	private int batchSize;
+	// parameters of the current batch for the parallel jobs
+	private long frameCount;
+	private int start;
+	private int limit;
+	private Map<UnitGenerator, Timing> blockTimings;
+	private final IntConsumer pullIndependent = i -> {
+		JSynCircuit circuit = this.independent[i];
+		Timing timing = this.blockTimings.get(circuit);
+		double[] buffer = this.batch[i];
+		for (int block = 0; block < JSynProfiler.BLOCKS_PER_BATCH; block++) {
+			long frameCount = this.frameCount + block * Synthesizer.FRAMES_PER_BLOCK;
+			if (this.enabled && timing != null) {
+				this.account(timing, this.blockTimings, frameCount, this.start, this.limit);
+			} else {
+				circuit.output.pullData(frameCount, this.start, this.limit);
+			}
+			JSynProfiler.copyOutput(circuit, buffer, block, true);
+		}
+		// the first block is needed right away
+		JSynProfiler.copyOutput(circuit, buffer, 0, false);
+	};
+
+	JSynProfiler(UnderrunMonitor monitor) {
+		this.monitor = monitor;
+	}
+
+	/**
+	 * Make the synthesis thread wait for the given device to request every 
+	 * block before computing it, or pass null when not rendering offline.
+	 */
+	protected void setOfflineDevice(JSynVirtualAudioDeviceManager device) {
+		this.offlineDevice = device;
+	}
+
+	/**
+	 * Set the number of threads used for synthesis, including the synthesis 
+	 * thread itself. Waits for the current block to finish.
+	 */
+	protected synchronized void setThreads(int threads) {
+		if (this.workers != null) {
+			this.workers.shutdown();
+			this.workers = null;
+		}
+		if (threads > 1) {
+			this.workers = new SynthesisWorkers(threads);
+		}
+	}
+
+	protected int getThreads() {
+		return this.workers == null ? 1 : this.workers.getThreads();
+	}
+
+	private static boolean hasConnectedInputs(UnitGenerator unit) {
+		for (UnitPort port : unit.getPorts()) {
+			if (port instanceof UnitInputPort && ((UnitInputPort) port).isConnected()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isIndependent(UnitGenerator unit) {
+		if (!(unit instanceof JSynCircuit)) {
+			return false;
+		}
+		JSynCircuit circuit = (JSynCircuit) unit;
+		if (circuit.effect != null && circuit.effect.inputs.size() != 1) {
+			// the effect units sum the signals of several circuits
+			return false;
+		}
+		return !JSynProfiler.hasConnectedInputs(circuit.getSource());
+	}
+
+	/**
+	 * Called after connections were made or removed that might change which 
+	 * circuits can be computed in parallel, such as modulating a sound or 
+	 * adding it to an effect
+	 */
+	static void graphChanged() {
+		JSynProfiler.graphVersion.incrementAndGet();
+	}
+
+	private void partition(Map<UnitGenerator, Timing> timings) {
+		int version = JSynProfiler.graphVersion.get();
+		if (timings == this.partitionTimings && version == this.partitionVersion) {
+			return;
+		}
+		this.partitionTimings = timings;
+		this.partitionVersion = version;
+		if (this.independent.length < timings.size()) {
+			this.independent = new JSynCircuit[timings.size()];
+		}
+		this.independentCount = 0;
+		for (UnitGenerator u : timings.keySet()) {
+			if (JSynProfiler.isIndependent(u)) {
+				this.independent[this.independentCount++] = (JSynCircuit) u;
+			}
+		}
+		if (this.batch.length < this.independentCount) {
+			double[][] batch = Arrays.copyOf(this.batch, Math.max(this.independentCount, 2 * this.batch.length));
+			for (int i = this.batch.length; i < batch.length; i++) {
+				batch[i] = new double[JSynProfiler.BLOCKS_PER_BATCH * 2 * Synthesizer.FRAMES_PER_BLOCK];
+			}
+			this.batch = batch;
+		}
+	}
+
+	/**
+	 * Copy one block of the (stereo) output of a circuit to or from its batch 
+	 * buffer
+	 */
+	private static void copyOutput(JSynCircuit circuit, double[] buffer, int block, boolean toBuffer) {
+		for (int part = 0; part < 2; part++) {
+			double[] values = circuit.output.output.getValues(part);
+			int offset = (2 * block + part) * Synthesizer.FRAMES_PER_BLOCK;
+			if (toBuffer) {
+				System.arraycopy(values, 0, buffer, offset, Synthesizer.FRAMES_PER_BLOCK);
+			} else {
+				System.arraycopy(buffer, offset, values, 0, Synthesizer.FRAMES_PER_BLOCK);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of blocks that were computed
+	 */
+	private int pullInParallel(Map<UnitGenerator, Timing> timings, long frameCount, int start, int limit) {
+		if (this.batchBlock < this.batchSize) {
+			// hand out the next block of the current batch
+			for (int i = 0; i < this.independentCount; i++) {
+				JSynProfiler.copyOutput(this.independent[i], this.batch[i], this.batchBlock, false);
+			}
+			this.batchBlock++;
+			return 0;
+		}
+		this.batchSize = 0;
+		if (this.workers == null) {
+			return 1;
+		}
+		this.partition(timings);
+		if (this.independentCount > 1) {
+			this.blockTimings = timings;
+			this.frameCount = frameCount;
+			this.start = start;
+			this.limit = limit;
+			this.workers.run(this.independentCount, this.pullIndependent);
+			this.batchBlock = 1;
+			this.batchSize = JSynProfiler.BLOCKS_PER_BATCH;
+			return JSynProfiler.BLOCKS_PER_BATCH;
+		}
+		return 1;
+	}
+
+	protected void setProfiling(boolean enabled) {
+		if (enabled && !this.enabled) {
+			for (Timing t : this.timings.get().values()) {
+				t.reset();
+			}
+		}
+		this.enabled = enabled;
+		// block times are measured as part of the accounting
+		this.monitor.setMeasuring(enabled);
+	}
+
+	protected boolean isProfiling() {
+		return this.enabled;
+	}
+
+	protected void register(UnitGenerator unit) {
+		Map<UnitGenerator, Timing> timings;
+		Map<UnitGenerator, Timing> copy;
+		do {
+			timings = this.timings.get();
+			copy = new LinkedHashMap<UnitGenerator, Timing>(timings);
+			copy.put(unit, new Timing(unit));
+		} while (!this.timings.compareAndSet(timings, copy));
+	}
+
+	protected void unregister(UnitGenerator unit) {
+		Map<UnitGenerator, Timing> timings;
+		Map<UnitGenerator, Timing> copy;
+		do {
+			timings = this.timings.get();
+			copy = new LinkedHashMap<UnitGenerator, Timing>(timings);
+			copy.remove(unit);
+		} while (!this.timings.compareAndSet(timings, copy));
+	}
+
+	/**
+	 * @return profiles of all registered units, sorted by descending total time
+	 */
+	protected UnitProfile[] getProfiles() {
+		List<UnitProfile> profiles = new ArrayList<UnitProfile>();
+		for (Timing t : this.timings.get().values()) {
+			profiles.add(new UnitProfile(t.unit, JSynProfiler.describe(t.unit), t.calls, t.totalTime, t.maxTime));
+		}
+		UnitProfile[] result = profiles.toArray(new UnitProfile[profiles.size()]);
+		Arrays.sort(result, (a, b) -> Long.compare(b.totalTime, a.totalTime));
+		return result;
+	}
+
+	private static String describe(UnitGenerator unit) {
+		String name = unit.getClass().getSimpleName();
+		if (unit instanceof JSynCircuit) {
+			JSynCircuit circuit = (JSynCircuit) unit;
+			name = name + " (" + circuit.getSource().getClass().getSimpleName() + ")";
+		}
+		return name + "@" + Integer.toHexString(System.identityHashCode(unit));
+	}
+
+	// the unit that actually computes the output of the given unit: for 
+	// circuits (which don't generate anything themselves) that's the unit 
+	// whose output port they expose
+	private static UnitGenerator getOutputUnit(UnitGenerator unit) {
+		if (unit instanceof UnitSource) {
+			UnitGenerator outputUnit = ((UnitSource) unit).getOutput().getUnitGenerator();
+			if (outputUnit != null) {
+				return outputUnit;
+			}
+		}
+		return unit;
+	}
+
+	private static long time(UnitGenerator unit, long frameCount, int start, int limit) {
+		long startTime = System.nanoTime();
+		unit.pullData(frameCount, start, limit);
+		return System.nanoTime() - startTime;
+	}
+
+	private void account(Timing timing, Map<UnitGenerator, Timing> timings, long frameCount, int start, int limit) {
+		// circuits that are computed in parallel can already be ahead
+		if (timing.lastFrameCount >= frameCount) {
+			return;
+		}
+		timing.lastFrameCount = frameCount;
+
+		if (timing.unit instanceof JSynCircuit) {
+			// account for the effect units separately: first pull the raw sound, 
+			// then the effects, and only then the output of the circuit
+			JSynCircuit circuit = (JSynCircuit) timing.unit;
+			timing.blockTime = JSynProfiler.time(circuit.preEffect.getUnitGenerator(), frameCount, start, limit);
+			if (circuit.effect != null) {
+				for (UnitFilter u : new UnitFilter[] { circuit.effect.left, circuit.effect.right }) {
+					Timing effectTiming = timings.get(u);
+					if (effectTiming != null) {
+						this.account(effectTiming, timings, frameCount, start, limit);
+					}
+				}
+			}
+			timing.blockTime += JSynProfiler.time(circuit.output, frameCount, start, limit);
+		} else {
+			timing.blockTime = JSynProfiler.time(JSynProfiler.getOutputUnit(timing.unit), frameCount, start, limit);
+		}
+		timing.record(timing.blockTime);
+	}
+
+	@Override
+	public void pullData(long frameCount, int start, int limit) {
+		JSynVirtualAudioDeviceManager device = this.offlineDevice;
+		if (device != null) {
+			// wait outside of the lock, so that setThreads() doesn't have to wait 
+			// for the next render() call
+			device.awaitBlock();
+		}
+		this.pullBlock(frameCount, start, limit);
+	}
+
+	private synchronized void pullBlock(long frameCount, int start, int limit) {
+		long blockStart = System.nanoTime();
+		this.monitor.blockStarted(blockStart);
+		Map<UnitGenerator, Timing> timings = this.timings.get();
+		int blocks = this.pullInParallel(timings, frameCount, start, limit);
+		if (!this.enabled) {
+			return;
+		}
+		// pull everything else (units that have already been pulled in this block 
+		// return immediately)
+		for (Timing t : timings.values()) {
+			this.account(t, timings, frameCount, start, limit);
+		}
+		// the time spent on computing a batch is spread over all its blocks
+		this.monitor.blockFinished((System.nanoTime() - blockStart) / Math.max(1, blocks));
+	}
+
+	@Override
+	public void generate(int start, int limit) {
+	}
+}
@@ -0,0 +1,97 @@
+package processing.sound;
+
+import com.jsyn.Synthesizer;
+
+/**
+ * Captures its input like JSynFFT, but computes the spectrum of every hop of
+ * the input on the synthesis thread, and passes the spectra on to a consumer
+ * thread through a bounded lock-free single producer/single consumer queue.
+ * All buffers are allocated up front.
+ */
+class JSynSTFT extends JSynFFT {
+
+	private final int hop;
+	private int sinceLastFrame = 0;
+	private long framesProcessed = 0;
+
+	// resolved up front, so that the synthesis thread never has to wait for
+	// another thread that is computing the tables of a new transform size
+	private final RealFFT transform;
+	private final float[] real;
+	private final float[] work;
+	private final float[] magnitudes;
+
+	// the queue has one unused slot to distinguish a full from an empty queue
+	private final float[][] slots;
+	private final long[] slotFrames;
+	private volatile int head = 0;
+	private volatile int tail = 0;
+	private volatile int dropped = 0;
+
+	JSynSTFT(int bands, int hop, int capacity) {
+		// keep one extra block of input, so that the window ending at any
+		// frame of the block that was just written can still be read
+		super(2 * bands, 2 * bands + Synthesizer.FRAMES_PER_BLOCK);
+		this.hop = hop;
+		this.transform = RealFFT.get(2 * bands);
+		this.real = new float[2 * bands];
+		this.work = new float[2 * bands];
+		this.magnitudes = new float[2 * bands];
+		this.slots = new float[capacity + 1][bands];
+		this.slotFrames = new long[capacity + 1];
+	}
+
+	@Override
+	public void generate(int start, int limit) {
+		// write the block to the capture buffer
+		super.generate(start, limit);
+		for (int i = start; i < limit; i++) {
+			this.framesProcessed++;
+			if (++this.sinceLastFrame >= this.hop && this.framesProcessed >= this.real.length) {
+				this.sinceLastFrame = 0;
+				this.transform(limit - 1 - i);
+			}
+		}
+	}
+
+	private void transform(int delay) {
+		int tail = this.tail;
+		int next = (tail + 1) % this.slots.length;
+		if (next == this.head) {
+			// consumer isn't keeping up
+			this.dropped++;
+			return;
+		}
+		this.readWindowed(this.real, delay);
+		// transform the full window of 2*bands samples, so that bin k
+		// corresponds to k * sampleRate / (2*bands), and keep the lower half
+		this.transform.magnitudes(this.real, 0, this.work, this.magnitudes, 4f / this.real.length);
+		System.arraycopy(this.magnitudes, 0, this.slots[tail], 0, this.slots[tail].length);
+		this.slotFrames[tail] = this.framesProcessed;
+		this.tail = next;
+	}
+
+	int available() {
+		return (this.tail - this.head + this.slots.length) % this.slots.length;
+	}
+
+	/**
+	 * Copy the oldest spectrum in the queue into target and remove it
+	 * @return the number of input samples processed at the end of the
+	 * spectrum's window, or -1 if the queue is empty
+	 */
+	long poll(float[] target) {
+		int head = this.head;
+		if (head == this.tail) {
+			return -1;
+		}
+		System.arraycopy(this.slots[head], 0, target, 0, target.length);
+		long frame = this.slotFrames[head];
+		this.head = (head + 1) % this.slots.length;
+		return frame;
+	}
+
+	int getDropped() {
+		return this.dropped;
+	}
+}
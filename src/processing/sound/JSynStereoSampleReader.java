@@ -0,0 +1,17 @@
+package processing.sound;
+
+import com.jsyn.unitgen.VariableRateStereoReader;
+
+/**
+ * A VariableRateStereoReader which can be faded out.
+ */
+class JSynStereoSampleReader extends VariableRateStereoReader {
+
+	protected final JSynFadeOut fade = new JSynFadeOut();
+
+	@Override
+	public void generate(int start, int limit) {
+		super.generate(start, limit);
+		this.fade.apply(this.output, start, limit);
+	}
+}
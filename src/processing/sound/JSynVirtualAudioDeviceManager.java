@@ -0,0 +1,483 @@
+package processing.sound;
+
+import com.jsyn.Synthesizer;
+import com.jsyn.devices.AudioDeviceInputStream;
+import com.jsyn.devices.AudioDeviceManager;
+import com.jsyn.devices.AudioDeviceOutputStream;
+
+/**
+ * A JSyn audio device that is not backed by any sound card, for running the
+ * Sound library on headless servers and continuous integration machines.
+ *
+ * The device has one virtual input and output each, with configurable channel
+ * counts. Audio written to the input from Java code (or looped back from the
+ * output) can be captured with AudioIn, while the synthesized output is kept in
+ * a ring buffer from which it can be read again (see the corresponding methods
+ * of the Sound class).
+ *
+ * There are three ways in which the synthesis can be paced:
+ * <ul>
+ * <li><b>CLOCKED</b> devices generate audio at the same rate as a real sound
+ * card would, based on the system timer</li>
+ * <li><b>FREE_RUNNING</b> devices generate audio as fast as the CPU allows,
+ * overwriting the oldest data in the output ring buffer</li>
+ * <li><b>OFFLINE</b> devices block the synthesis thread until audio is
+ * explicitly requested by a call to render() (see
+ * Sound.useOfflineRendering())</li>
+ * </ul>
+ *
+ * In OFFLINE mode the synthesis thread is held before it computes each block
+ * (see awaitBlock()) rather than when it writes a full buffer, so that
+ * nothing is computed ahead of a render() call. Only once the requested
+ * frames have been computed, the rest of the synthesizer's current buffer is
+ * computed as well so that it can be written out. Those surplus frames are
+ * handed out first by the next render() call.
+ */
+class JSynVirtualAudioDeviceManager implements AudioDeviceManager {
+
+	static final int CLOCKED = 0;
+	static final int FREE_RUNNING = 1;
+	static final int OFFLINE = 2;
+
+	// size of the input and output ring buffers, in frames
+	private static final int RING_BUFFER_FRAMES = 65536;
+
+	private int inputChannels;
+	private int outputChannels;
+	private int mode;
+	private boolean loopback = false;
+
+	// in CLOCKED mode, the synthesis can run ahead of the system timer by this 
+	// many seconds, just like it can fill a real sound card's buffer
+	private double outputLatency = 0;
+	private double inputLatency = 0;
+
+	private SampleRingBuffer inputBuffer;
+	private SampleRingBuffer outputBuffer;
+
+	private VirtualOutputStream outputStream;
+
+	public JSynVirtualAudioDeviceManager() {
+		this(2, 2, JSynVirtualAudioDeviceManager.CLOCKED);
+	}
+
+	/**
+	 * @param inputChannels number of input channels of the virtual device (can
+	 * be 0)
+	 * @param outputChannels number of output channels of the virtual device
+	 * @param mode one of CLOCKED, FREE_RUNNING or OFFLINE
+	 */
+	public JSynVirtualAudioDeviceManager(int inputChannels, int outputChannels, int mode) {
+		this.inputChannels = inputChannels;
+		this.outputChannels = outputChannels;
+		this.mode = mode;
+		this.inputBuffer = new SampleRingBuffer(JSynVirtualAudioDeviceManager.RING_BUFFER_FRAMES * Math.max(1, inputChannels));
+		this.outputBuffer = new SampleRingBuffer(JSynVirtualAudioDeviceManager.RING_BUFFER_FRAMES * outputChannels);
+	}
+
+	public String getName() {
+		return "JSyn Virtual Audio for Processing Sound";
+	}
+
+	protected boolean isOffline() {
+		return this.mode == JSynVirtualAudioDeviceManager.OFFLINE;
+	}
+
+	protected boolean isClocked() {
+		return this.mode == JSynVirtualAudioDeviceManager.CLOCKED;
+	}
+
+	/**
+	 * Simple circular buffer of interleaved samples. When the buffer is full,
+	 * writing to it overwrites the oldest data.
+	 */
+	private static class SampleRingBuffer {
+		private double[] data;
+		private long writeIndex = 0;
+		private long readIndex = 0;
+
+		SampleRingBuffer(int capacity) {
+			this.data = new double[capacity];
+		}
+
+		synchronized void write(double[] buffer, int start, int count) {
+			for (int i = 0; i < count; i++) {
+				this.data[(int) (this.writeIndex++ % this.data.length)] = buffer[start + i];
+			}
+			// drop anything that has just been overwritten
+			this.readIndex = Math.max(this.readIndex, this.writeIndex - this.data.length);
+		}
+
+		synchronized int read(double[] buffer, int start, int count) {
+			int n = (int) Math.min(count, this.writeIndex - this.readIndex);
+			for (int i = 0; i < n; i++) {
+				buffer[start + i] = this.data[(int) (this.readIndex++ % this.data.length)];
+			}
+			return n;
+		}
+
+		synchronized int available() {
+			return (int) (this.writeIndex - this.readIndex);
+		}
+
+		synchronized void clear() {
+			this.readIndex = this.writeIndex;
+		}
+	}
+
+	private class VirtualOutputStream implements AudioDeviceOutputStream {
+		protected int frameRate;
+		protected int samplesPerFrame;
+
+		private boolean running = false;
+
+		// time keeping for CLOCKED mode
+		private long startTime;
+		private long framesWritten;
+
+		// current render request in OFFLINE mode
+		private double[] target;
+		private int targetIndex;
+		private int targetEnd;
+		// samples requested by all render() calls, allowed to be computed by
+		// awaitBlock() and written by the synthesis thread so far
+		private long requested;
+		private long computed;
+		private long written;
+
+		// helper buffer for looping output channels back to the input
+		private double[] loopbackBuffer;
+
+		public VirtualOutputStream(int frameRate, int samplesPerFrame) {
+			this.frameRate = frameRate;
+			this.samplesPerFrame = samplesPerFrame;
+		}
+
+		public synchronized void start() {
+			this.running = true;
+			this.startTime = System.nanoTime();
+			this.framesWritten = 0;
+			this.requested = 0;
+			this.computed = 0;
+			this.written = 0;
+		}
+
+		public void write(double value) {
+			this.write(new double[] { value }, 0, 1);
+		}
+
+		public void write(double[] buffer) {
+			this.write(buffer, 0, buffer.length);
+		}
+
+		public void write(double[] buffer, int start, int count) {
+			if (loopback) {
+				this.loopBack(buffer, start, count);
+			}
+			if (mode == JSynVirtualAudioDeviceManager.OFFLINE) {
+				this.writeToRenderTarget(buffer, start, count);
+				return;
+			}
+			outputBuffer.write(buffer, start, count);
+			if (mode == JSynVirtualAudioDeviceManager.CLOCKED) {
+				this.framesWritten += count / this.samplesPerFrame;
+				long ahead = this.startTime + 1000000000L * this.framesWritten / this.frameRate - System.nanoTime();
+				long sleep = ahead - (long) (1000000000L * outputLatency);
+				if (sleep > 0) {
+					try {
+						Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				} else if (ahead < -100000000L) {
+					// more than 100ms behind (a real device would have underrun), don't
+					// try to catch up in one big burst
+					this.startTime -= ahead;
+				}
+			}
+		}
+
+		// copy output frames into the input ring buffer, wrapping around channels
+		// if the input has more channels than the output
+		private void loopBack(double[] buffer, int start, int count) {
+			if (inputChannels == 0) {
+				return;
+			}
+			int frames = count / this.samplesPerFrame;
+			if (this.loopbackBuffer == null || this.loopbackBuffer.length < frames * inputChannels) {
+				this.loopbackBuffer = new double[frames * inputChannels];
+			}
+			for (int i = 0; i < frames; i++) {
+				for (int c = 0; c < inputChannels; c++) {
+					this.loopbackBuffer[i * inputChannels + c] = buffer[start + i * this.samplesPerFrame + c % this.samplesPerFrame];
+				}
+			}
+			inputBuffer.write(this.loopbackBuffer, 0, frames * inputChannels);
+		}
+
+		private synchronized void writeToRenderTarget(double[] buffer, int start, int count) {
+			while (count > 0) {
+				while (this.running && this.target == null) {
+					try {
+						this.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+				if (!this.running) {
+					// discard anything the synthesis thread still wants to write
+					return;
+				}
+				int n = Math.min(count, this.targetEnd - this.targetIndex);
+				System.arraycopy(buffer, start, this.target, this.targetIndex, n);
+				this.targetIndex += n;
+				this.written += n;
+				start += n;
+				count -= n;
+				if (this.targetIndex == this.targetEnd) {
+					// request fulfilled, hand control back to render()
+					this.target = null;
+					this.notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Blocks the synthesis thread before it computes the next block until
+		 * that block has been requested by render(), unless the block belongs to
+		 * a buffer that has already been started (which has to be completed
+		 * before it can be written).
+		 */
+		protected synchronized void awaitBlock() {
+			while (this.running && this.computed >= this.requested && this.written >= this.computed) {
+				try {
+					this.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			this.computed += Synthesizer.FRAMES_PER_BLOCK * this.samplesPerFrame;
+		}
+
+		/**
+		 * Blocks the calling thread until the synthesis thread has written
+		 * `count` samples into the given array.
+		 * @return false if the stream was stopped before the request was fulfilled
+		 */
+		protected synchronized boolean render(double[] buffer, int offset, int count) {
+			if (!this.running) {
+				return false;
+			}
+			this.requested += count;
+			this.target = buffer;
+			this.targetIndex = offset;
+			this.targetEnd = offset + count;
+			this.notifyAll();
+			while (this.running && this.target != null) {
+				try {
+					this.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					this.target = null;
+					return false;
+				}
+			}
+			return this.target == null && this.targetIndex == this.targetEnd;
+		}
+
+		public synchronized void stop() {
+			this.running = false;
+			this.target = null;
+			this.notifyAll();
+		}
+
+		public double getLatency() {
+			return mode == JSynVirtualAudioDeviceManager.CLOCKED ? outputLatency : 0;
+		}
+
+		public void close() {
+			this.stop();
+		}
+	}
+
+	private class VirtualInputStream implements AudioDeviceInputStream {
+		public void start() {
+		}
+
+		public double read() {
+			double[] buffer = new double[1];
+			this.read(buffer, 0, 1);
+			return buffer[0];
+		}
+
+		public int read(double[] buffer) {
+			return this.read(buffer, 0, buffer.length);
+		}
+
+		public int read(double[] buffer, int start, int count) {
+			// pad with silence when no (or not enough) input has been provided
+			int read = inputBuffer.read(buffer, start, count);
+			for (int i = read; i < count; i++) {
+				buffer[start + i] = 0;
+			}
+			return count;
+		}
+
+		public int available() {
+			return inputBuffer.available();
+		}
+
+		public void stop() {
+		}
+
+		public double getLatency() {
+			return inputLatency;
+		}
+
+		public void close() {
+		}
+	}
+
+	public AudioDeviceOutputStream createOutputStream(int deviceID, int frameRate, int samplesPerFrame) {
+		this.outputStream = new VirtualOutputStream(frameRate, samplesPerFrame);
+		return this.outputStream;
+	}
+
+	public AudioDeviceInputStream createInputStream(int deviceID, int frameRate, int samplesPerFrame) {
+		if (this.inputChannels == 0) {
+			throw new RuntimeException("the virtual audio device has no inputs");
+		}
+		return new VirtualInputStream();
+	}
+
+	/**
+	 * Read the most recently synthesized output into the given array. The data is
+	 * interleaved, with as many channels as the device has output channels.
+	 * Not available in OFFLINE mode, where the output goes straight to the
+	 * render target instead.
+	 *
+	 * @return the number of values (not frames!) written into the array,
+	 * which can be less than its length if there is not enough new output
+	 */
+	protected int readOutput(float[] target) {
+		double[] buffer = new double[target.length];
+		int read = this.outputBuffer.read(buffer, 0, buffer.length);
+		for (int i = 0; i < read; i++) {
+			target[i] = (float) buffer[i];
+		}
+		return read;
+	}
+
+	/**
+	 * Number of output values that can currently be read with readOutput().
+	 */
+	protected int availableOutput() {
+		return this.outputBuffer.available();
+	}
+
+	/**
+	 * Feed audio data into the virtual input, from where it can be captured by
+	 * AudioIn objects. The data has to be interleaved, with as many channels as
+	 * the device has input channels.
+	 */
+	protected void writeInput(float[] data) {
+		double[] buffer = new double[data.length];
+		for (int i = 0; i < data.length; i++) {
+			buffer[i] = data[i];
+		}
+		this.inputBuffer.write(buffer, 0, buffer.length);
+	}
+
+	/**
+	 * Whether to copy all synthesized output to the virtual input.
+	 */
+	protected void loopback(boolean loopback) {
+		this.loopback = loopback;
+		this.inputBuffer.clear();
+	}
+
+	/**
+	 * Lets the synthesis thread generate the given number of samples (not
+	 * frames!) of interleaved output data and copies them into the buffer.
+	 * @return false if the device is not in OFFLINE mode or the synthesizer is
+	 * not running
+	 */
+	protected boolean render(double[] buffer, int offset, int count) {
+		VirtualOutputStream stream = this.outputStream;
+		return this.isOffline() && stream != null && stream.render(buffer, offset, count);
+	}
+
+	/**
+	 * Called by the synthesis thread before every block, returns once the block
+	 * may be computed.
+	 */
+	protected void awaitBlock() {
+		VirtualOutputStream stream = this.outputStream;
+		if (stream != null) {
+			stream.awaitBlock();
+		}
+	}
+
+	/**
+	 * Unblocks the synthesis thread, must be called before stopping the
+	 * synthesizer.
+	 */
+	protected void release() {
+		if (this.outputStream != null) {
+			this.outputStream.stop();
+		}
+	}
+
+	public double getDefaultHighInputLatency(int deviceID) {
+		return 0;
+	}
+
+	public double getDefaultHighOutputLatency(int deviceID) {
+		return 0;
+	}
+
+	public int getDefaultInputDeviceID() {
+		return this.inputChannels > 0 ? 0 : -1;
+	}
+
+	public int getDefaultOutputDeviceID() {
+		return 0;
+	}
+
+	public double getDefaultLowInputLatency(int deviceID) {
+		return 0;
+	}
+
+	public double getDefaultLowOutputLatency(int deviceID) {
+		return 0;
+	}
+
+	public int getDeviceCount() {
+		return 1;
+	}
+
+	public String getDeviceName(int deviceID) {
+		return this.isOffline() ? "Offline renderer" : "Virtual audio device";
+	}
+
+	public int getMaxInputChannels(int deviceID) {
+		return this.inputChannels;
+	}
+
+	public int getMaxOutputChannels(int deviceID) {
+		return this.outputChannels;
+	}
+
+	public int setSuggestedOutputLatency(double latency) {
+		this.outputLatency = latency;
+		return 0;
+	}
+
+	public int setSuggestedInputLatency(double latency) {
+		this.inputLatency = latency;
+		return 0;
+	}
+
+}
@@ -0,0 +1,142 @@
+package processing.sound;
+
+import processing.core.PApplet;
+
+/**
+ * This analyzer calculates the mel-frequency cepstral coefficients (MFCCs) 
+ * of an audio stream, a compact description of the overall shape of its 
+ * spectrum which is commonly used to classify sounds and speech. The 
+ * coefficients are the discrete cosine transform of the logarithm of the 
+ * energies of the bands of the <b>MelSpectrum</b>. Besides analyzing its 
+ * live input, the analyzer can also calculate the coefficients of any part 
+ * of an <b>AudioSample</b> or <b>SoundFile</b>.
+ * 
+ * @webref Analysis:MFCC
+ * @webBrief Calculates the mel-frequency cepstral coefficients of an audio 
+ * stream.
+ * @see MelSpectrum
+ **/
+public class MFCC extends MelAnalyzer {
+
+	// lower bound of the mel band energies, to avoid taking the log of 0
+	private static final float MIN_ENERGY = 1e-10f;
+
+	public float[] coefficients;
+
+	private float[] dct;
+
+	public MFCC(PApplet parent) {
+		this(parent, 13);
+	}
+
+	public MFCC(PApplet parent, int coefficients) {
+		this(parent, coefficients, 40);
+	}
+
+	public MFCC(PApplet parent, int coefficients, int bands) {
+		this(parent, coefficients, bands, 512);
+	}
+
+	/**
+	 * @param parent
+	 *            typically use "this"
+	 * @param coefficients
+	 *            number of coefficients to calculate (default: 13)
+	 * @param bands
+	 *            number of mel bands that the coefficients are calculated from, 
+	 *            at least as many as there are coefficients (default: 40)
+	 * @param fftBands
+	 *            number of frequency bands of the underlying FFT, which needs to 
+	 *            be a power of 2 (default: 512). The coefficients are computed 
+	 *            from 2*fftBands samples of audio.
+	 */
+	public MFCC(PApplet parent, int coefficients, int bands, int fftBands) {
+		super(parent, bands, fftBands);
+		if (coefficients < 1 || coefficients > bands) {
+			Engine.printError("number of coefficients needs to be between 1 and the number of mel bands");
+		} else {
+			this.coefficients = new float[coefficients];
+			this.dct = MelFilterbank.getDct(bands, coefficients);
+		}
+	}
+
+	private void calculateCoefficients(float[] target) {
+		int bands = this.mel.length;
+		for (int i = 0; i < bands; i++) {
+			this.mel[i] = (float) Math.log(Math.max(this.mel[i], MIN_ENERGY));
+		}
+		for (int k = 0; k < this.coefficients.length; k++) {
+			float sum = 0;
+			for (int i = 0; i < bands; i++) {
+				sum += this.dct[k * bands + i] * this.mel[i];
+			}
+			target[k] = sum;
+		}
+	}
+
+	public float[] analyze() {
+		return this.analyze(this.coefficients);
+	}
+
+	/**
+	 * Calculates the mel-frequency cepstral coefficients of the current input 
+	 * signal.
+	 * 
+	 * @param target
+	 *            if provided, writes the coefficients into the given array. The 
+	 *            array needs to have as many elements as this analyzer's number 
+	 *            of coefficients.
+	 * @return the coefficients
+	 * @webref Analysis:MFCC
+	 * @webBrief Calculates the mel-frequency cepstral coefficients of the 
+	 * audio input signal.
+	 **/
+	public float[] analyze(float[] target) {
+		this.analyzeMel(this.mel);
+		this.calculateCoefficients(target);
+		return target;
+	}
+
+	public float[] analyze(AudioSample sample, int startFrame) {
+		return this.analyze(sample, startFrame, this.coefficients);
+	}
+
+	/**
+	 * Calculates the mel-frequency cepstral coefficients of a part of an audio 
+	 * sample. Stereo samples are mixed down to mono before they are analyzed.
+	 * 
+	 * @param sample
+	 *            the AudioSample or SoundFile to analyze
+	 * @param startFrame
+	 *            index of the first frame of the sample to analyze
+	 * @param target
+	 *            if provided, writes the coefficients into the given array
+	 * @return the coefficients of the 2*fftBands frames of the sample starting 
+	 *         at startFrame
+	 * @webref Analysis:MFCC
+	 * @webBrief Calculates the mel-frequency cepstral coefficients of a part 
+	 * of an audio sample.
+	 **/
+	public float[] analyze(AudioSample sample, int startFrame, float[] target) {
+		if (this.analyzeMel(sample, startFrame, this.mel)) {
+			this.calculateCoefficients(target);
+		}
+		return target;
+	}
+
+	// Below are just duplicated methods from superclasses which are required
+	// for the online reference to build the corresponding pages.
+
+	/**
+	 * Define the audio input for the analyzer.
+	 * 
+	 * @param input
+	 *            the input sound source. Can be an oscillator, noise generator,
+	 *            SoundFile or AudioIn.
+	 * @webref Analysis:MFCC
+	 * @webBrief Define the audio input for the analyzer.
+	 **/
+	public void input(SoundObject input) {
+		super.input(input);
+	}
+}
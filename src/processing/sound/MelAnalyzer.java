@@ -0,0 +1,111 @@
+package processing.sound;
+
+import com.jsyn.data.FloatSample;
+import com.jsyn.data.HannWindow;
+import com.jsyn.data.SpectralWindow;
+import com.jsyn.ports.UnitOutputPort;
+
+import processing.core.PApplet;
+
+/**
+ * Common superclass of the MelSpectrum and MFCC analyzers, which computes
+ * the energies of the mel bands of either the live input (captured by a
+ * JSynFFT unit) or a chunk of an AudioSample. All memory that is needed for
+ * the analysis is allocated up front.
+ */
+abstract class MelAnalyzer extends Analyzer {
+
+	private final int fftBands;
+	private JSynFFT fft;
+	private SpectralWindow window;
+
+	private RealFFT transform;
+	private float[] interleaved;
+	private float[] real;
+	private float[] work;
+	private float[] magnitudes;
+
+	protected float[] mel;
+	private MelFilterbank filterbank;
+
+	protected MelAnalyzer(PApplet parent, int bands, int fftBands) {
+		super(parent);
+		this.fftBands = fftBands;
+		if (bands < 1) {
+			Engine.printError("number of mel bands needs to be at least 1");
+		} else if (fftBands < 1 || Integer.bitCount(fftBands) != 1 || fftBands > 16384) {
+			Engine.printError("number of FFT bands needs to be a power of 2 no larger than 16384");
+		} else {
+			// like the FFT analyzer, the spectrum is computed from 2*fftBands samples
+			this.fft = new JSynFFT(2 * fftBands);
+			this.window = new HannWindow(2 * fftBands);
+			this.transform = RealFFT.get(2 * fftBands);
+			// room for stereo samples
+			this.interleaved = new float[4 * fftBands];
+			this.real = new float[2 * fftBands];
+			this.work = new float[2 * fftBands];
+			this.magnitudes = new float[2 * fftBands];
+			this.mel = new float[bands];
+		}
+	}
+
+	protected void removeInput() {
+		this.fft.input.disconnectAll();
+		this.input = null;
+	}
+
+	protected void setInput(UnitOutputPort input) {
+		// superclass makes sure that input unit is actually playing, just connect it
+		this.engine.add(this.fft);
+		this.fft.input.connect(input);
+		this.fft.start();
+	}
+
+	/**
+	 * Compute the mel band energies of the most recent input
+	 */
+	protected void analyzeMel(float[] target) {
+		if (this.input == null) {
+			Engine.printWarning("this analyzer has no sound source connected to it, nothing to analyze");
+		}
+		this.fft.readWindowed(this.real);
+		this.calculateMel(this.engine.getSampleRate(), target);
+	}
+
+	/**
+	 * Compute the mel band energies of the audio sample, starting at the given
+	 * frame. Stereo samples are mixed down to mono.
+	 * @return false if the start frame is invalid
+	 */
+	protected boolean analyzeMel(AudioSample audioSample, int startFrame, float[] target) {
+		if (!audioSample.checkStartFrame(startFrame)) {
+			return false;
+		}
+		FloatSample sample = audioSample.sample;
+		int channels = sample.getChannelsPerFrame();
+		int length = Math.min(this.real.length, sample.getNumFrames() - startFrame);
+		sample.read(startFrame, this.interleaved, 0, length);
+		for (int i = 0; i < this.real.length; i++) {
+			float value = 0;
+			if (i < length) {
+				for (int c = 0; c < channels; c++) {
+					value += this.interleaved[i * channels + c];
+				}
+				value /= channels;
+			}
+			this.real[i] = value * (float) this.window.get(i);
+		}
+		this.calculateMel((float) sample.getFrameRate(), target);
+		return true;
+	}
+
+	private void calculateMel(float frameRate, float[] target) {
+		// unlike FFT, the transform covers the full window of 2*fftBands
+		// samples, so that bin k corresponds to k * frameRate / (2*fftBands)
+		this.transform.magnitudes(this.real, 0, this.work, this.magnitudes, 4f / this.real.length);
+		if (this.filterbank == null || this.filterbank.frameRate != frameRate) {
+			this.filterbank = MelFilterbank.get(this.fftBands + 1, this.mel.length, frameRate);
+		}
+		this.filterbank.apply(this.magnitudes, target);
+	}
+}
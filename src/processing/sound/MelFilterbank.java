@@ -0,0 +1,109 @@
+package processing.sound;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Triangular filters which are spaced evenly on the mel scale, stored as a
+ * sparse matrix (only the non-zero weights of every filter), as well as the
+ * discrete cosine transform which turns mel band energies into mel-frequency
+ * cepstral coefficients. Both are computed once and shared between analyzers
+ * with the same parameters.
+ */
+class MelFilterbank {
+
+	private static final Map<String, MelFilterbank> filterbanks = new HashMap<String, MelFilterbank>();
+	private static final Map<String, float[]> dcts = new HashMap<String, float[]>();
+
+	final int bands;
+	final float frameRate;
+
+	// index of the first FFT bin of every filter, and its non-zero weights
+	private final int[] first;
+	private final float[][] weights;
+
+	private MelFilterbank(int bins, int bands, float frameRate) {
+		this.bands = bands;
+		this.frameRate = frameRate;
+		this.first = new int[bands];
+		this.weights = new float[bands][];
+
+		// bins are spaced frameRate / (2 * (bins - 1)) apart, from 0Hz up to
+		// the Nyquist frequency
+		double binWidth = frameRate / (2.0 * (bins - 1));
+		double maxMel = MelFilterbank.toMel(frameRate / 2.0);
+		for (int band = 0; band < bands; band++) {
+			double lower = MelFilterbank.toHertz(maxMel * band / (bands + 1));
+			double center = MelFilterbank.toHertz(maxMel * (band + 1) / (bands + 1));
+			double upper = MelFilterbank.toHertz(maxMel * (band + 2) / (bands + 1));
+			int first = (int) Math.ceil(lower / binWidth);
+			int last = Math.min(bins - 1, (int) Math.floor(upper / binWidth));
+			this.first[band] = first;
+			this.weights[band] = new float[Math.max(0, last - first + 1)];
+			for (int bin = first; bin <= last; bin++) {
+				double frequency = bin * binWidth;
+				double weight = frequency <= center ? (frequency - lower) / (center - lower) : (upper - frequency) / (upper - center);
+				this.weights[band][bin - first] = (float) Math.max(0, weight);
+			}
+		}
+	}
+
+	private static double toMel(double hertz) {
+		return 2595 * Math.log10(1 + hertz / 700);
+	}
+
+	private static double toHertz(double mel) {
+		return 700 * (Math.pow(10, mel / 2595) - 1);
+	}
+
+	/**
+	 * Get the filterbank for a spectrum with the given number of bins,
+	 * covering the frequencies from 0Hz up to and including half the given
+	 * frame rate
+	 */
+	static synchronized MelFilterbank get(int bins, int bands, float frameRate) {
+		String key = bins + ":" + bands + ":" + frameRate;
+		MelFilterbank filterbank = MelFilterbank.filterbanks.get(key);
+		if (filterbank == null) {
+			filterbank = new MelFilterbank(bins, bands, frameRate);
+			MelFilterbank.filterbanks.put(key, filterbank);
+		}
+		return filterbank;
+	}
+
+	/**
+	 * Calculate the energy of every mel band from the given magnitude spectrum
+	 */
+	void apply(float[] magnitudes, float[] target) {
+		for (int band = 0; band < this.bands; band++) {
+			float[] weights = this.weights[band];
+			int first = this.first[band];
+			float sum = 0;
+			for (int i = 0; i < weights.length; i++) {
+				float magnitude = magnitudes[first + i];
+				sum += weights[i] * magnitude * magnitude;
+			}
+			target[band] = sum;
+		}
+	}
+
+	/**
+	 * Get the orthonormal DCT-II matrix which maps the given number of mel
+	 * bands to the given number of coefficients, one row per coefficient
+	 */
+	static synchronized float[] getDct(int bands, int coefficients) {
+		String key = bands + ":" + coefficients;
+		float[] dct = MelFilterbank.dcts.get(key);
+		if (dct == null) {
+			dct = new float[coefficients * bands];
+			for (int k = 0; k < coefficients; k++) {
+				double scale = Math.sqrt((k == 0 ? 1.0 : 2.0) / bands);
+				for (int n = 0; n < bands; n++) {
+					dct[k * bands + n] = (float) (scale * Math.cos(Math.PI * k * (n + 0.5) / bands));
+				}
+			}
+			MelFilterbank.dcts.put(key, dct);
+		}
+		return dct;
+	}
+}
@@ -0,0 +1,106 @@
+package processing.sound;
+
+import processing.core.PApplet;
+
+/**
+ * This analyzer calculates the mel spectrum of an audio stream, i.e. the 
+ * energy of the audio in a number of frequency bands which are spaced 
+ * according to the mel scale, which approximates the way humans perceive 
+ * pitch: the bands are narrow at low frequencies and get wider towards high 
+ * frequencies. Mel spectra are commonly used to classify sounds. Besides 
+ * analyzing its live input, the analyzer can also calculate the mel 
+ * spectrum of any part of an <b>AudioSample</b> or <b>SoundFile</b>.
+ * 
+ * @webref Analysis:MelSpectrum
+ * @webBrief Calculates the energy of an audio stream in frequency bands 
+ * spaced according to the mel scale.
+ * @see MFCC
+ **/
+public class MelSpectrum extends MelAnalyzer {
+
+	public float[] spectrum;
+
+	public MelSpectrum(PApplet parent) {
+		this(parent, 40);
+	}
+
+	public MelSpectrum(PApplet parent, int bands) {
+		this(parent, bands, 512);
+	}
+
+	/**
+	 * @param parent
+	 *            typically use "this"
+	 * @param bands
+	 *            number of mel bands (default: 40)
+	 * @param fftBands
+	 *            number of frequency bands of the underlying FFT, which needs to 
+	 *            be a power of 2 (default: 512). The mel spectrum is computed 
+	 *            from 2*fftBands samples of audio.
+	 */
+	public MelSpectrum(PApplet parent, int bands, int fftBands) {
+		super(parent, bands, fftBands);
+		this.spectrum = this.mel;
+	}
+
+	public float[] analyze() {
+		return this.analyze(this.spectrum);
+	}
+
+	/**
+	 * Calculates the current mel spectrum of the input signal, and returns an 
+	 * array with the energy of each mel band, from the lowest to the highest.
+	 * 
+	 * @param target
+	 *            if provided, writes the mel spectrum into the given array. The 
+	 *            array needs to have as many elements as this analyzer's number 
+	 *            of mel bands.
+	 * @return the mel spectrum
+	 * @webref Analysis:MelSpectrum
+	 * @webBrief Calculates the current mel spectrum of the audio input signal.
+	 **/
+	public float[] analyze(float[] target) {
+		this.analyzeMel(target);
+		return target;
+	}
+
+	public float[] analyze(AudioSample sample, int startFrame) {
+		return this.analyze(sample, startFrame, this.spectrum);
+	}
+
+	/**
+	 * Calculates the mel spectrum of a part of an audio sample. Stereo samples 
+	 * are mixed down to mono before they are analyzed.
+	 * 
+	 * @param sample
+	 *            the AudioSample or SoundFile to analyze
+	 * @param startFrame
+	 *            index of the first frame of the sample to analyze
+	 * @param target
+	 *            if provided, writes the mel spectrum into the given array
+	 * @return the mel spectrum of the 2*fftBands frames of the sample starting 
+	 *         at startFrame
+	 * @webref Analysis:MelSpectrum
+	 * @webBrief Calculates the mel spectrum of a part of an audio sample.
+	 **/
+	public float[] analyze(AudioSample sample, int startFrame, float[] target) {
+		this.analyzeMel(sample, startFrame, target);
+		return target;
+	}
+
+	// Below are just duplicated methods from superclasses which are required
+	// for the online reference to build the corresponding pages.
+
+	/**
+	 * Define the audio input for the analyzer.
+	 * 
+	 * @param input
+	 *            the input sound source. Can be an oscillator, noise generator,
+	 *            SoundFile or AudioIn.
+	 * @webref Analysis:MelSpectrum
+	 * @webBrief Define the audio input for the analyzer.
+	 **/
+	public void input(SoundObject input) {
+		super.input(input);
+	}
+}
@@ -72,7 +72,7 @@ public abstract class MultiChannel {
 	 * channel, to have them play back on another channel at the same time.
 	 */
 	public static void connectToOutput(SoundObject o, int channel) {
-		Engine.getEngine().connectToOutput(channel, o.circuit);
+		o.engine.connectToOutput(channel, o.circuit);
 	}
 
 	/**
@@ -84,7 +84,7 @@ public abstract class MultiChannel {
 	 * @see connectToOutput()
 	 */
 	public static void disconnectFromOutput(SoundObject o, int channel) {
-		Engine.getEngine().disconnectFromOutput(channel, o.circuit);
+		o.engine.disconnectFromOutput(channel, o.circuit);
 	}
 
 	/**
@@ -0,0 +1,136 @@
+package processing.sound;
+
+/**
+ * Fast Fourier transform of real-valued input. The n real input values are
+ * packed into n/2 complex values, transformed with a complex FFT of half the
+ * size, and the spectrum of the real input is then recovered from the
+ * conjugate symmetric parts, which takes roughly half the time of a complex
+ * FFT of size n with an imaginary part of zeros. The bit reversal and twiddle
+ * factor tables are computed once per size and shared by all users.
+ */
+class RealFFT {
+
+	// one (immutable) transform per power of 2
+	private static final RealFFT[] transforms = new RealFFT[31];
+
+	final int size;
+	private final int half;
+
+	private final int[] reverse;
+	// twiddle factors of the complex FFT of size n/2
+	private final float[] cos;
+	private final float[] sin;
+	// twiddle factors for recovering the real spectrum
+	private final float[] splitCos;
+	private final float[] splitSin;
+
+	private RealFFT(int size) {
+		this.size = size;
+		this.half = Math.max(1, size / 2);
+
+		int bits = Integer.numberOfTrailingZeros(this.half);
+		this.reverse = new int[this.half];
+		for (int i = 0; i < this.half; i++) {
+			this.reverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+		}
+		this.cos = new float[this.half / 2];
+		this.sin = new float[this.half / 2];
+		for (int i = 0; i < this.cos.length; i++) {
+			this.cos[i] = (float) Math.cos(2 * Math.PI * i / this.half);
+			this.sin[i] = (float) Math.sin(2 * Math.PI * i / this.half);
+		}
+		this.splitCos = new float[this.half];
+		this.splitSin = new float[this.half];
+		for (int i = 0; i < this.half; i++) {
+			this.splitCos[i] = (float) Math.cos(2 * Math.PI * i / size);
+			this.splitSin[i] = (float) Math.sin(2 * Math.PI * i / size);
+		}
+	}
+
+	/**
+	 * Get the transform for the given size, which needs to be a power of 2
+	 */
+	static synchronized RealFFT get(int size) {
+		int index = Integer.numberOfTrailingZeros(size);
+		if (RealFFT.transforms[index] == null) {
+			RealFFT.transforms[index] = new RealFFT(size);
+		}
+		return RealFFT.transforms[index];
+	}
+
+	/**
+	 * Calculate the magnitudes of all size frequency bins of the given input,
+	 * multiplied by scale. The input is left untouched.
+	 * @param input
+	 *            array holding size input values starting at offset
+	 * @param work
+	 *            scratch array of at least size elements, so that multiple
+	 *            threads can use the same transform at the same time
+	 * @param target
+	 *            array of at least size elements which the magnitudes are
+	 *            written to
+	 */
+	void magnitudes(float[] input, int offset, float[] work, float[] target, float scale) {
+		if (this.size == 1) {
+			target[0] = Math.abs(input[offset]) * scale;
+			return;
+		}
+		this.transform(input, offset, work);
+
+		int h = this.half;
+		// bins 0 and n/2 are real
+		target[0] = Math.abs(work[0] + work[1]) * scale;
+		target[h] = Math.abs(work[0] - work[1]) * scale;
+		for (int k = 1; k < h; k++) {
+			float ar = work[2 * k];
+			float ai = work[2 * k + 1];
+			float br = work[2 * (h - k)];
+			float bi = -work[2 * (h - k) + 1];
+			// spectra of the even and odd input values
+			float er = 0.5f * (ar + br);
+			float ei = 0.5f * (ai + bi);
+			float or = 0.5f * (ai - bi);
+			float oi = -0.5f * (ar - br);
+			float wr = this.splitCos[k];
+			float wi = -this.splitSin[k];
+			float xr = er + wr * or - wi * oi;
+			float xi = ei + wr * oi + wi * or;
+			target[k] = (float) Math.sqrt(xr * xr + xi * xi) * scale;
+		}
+		// the spectrum of a real signal is conjugate symmetric
+		for (int k = h + 1; k < this.size; k++) {
+			target[k] = target[this.size - k];
+		}
+	}
+
+	/**
+	 * Complex FFT of the input values, interpreted as size/2 (real, imaginary)
+	 * pairs, written interleaved to work.
+	 */
+	private void transform(float[] input, int offset, float[] work) {
+		int h = this.half;
+		for (int i = 0; i < h; i++) {
+			int j = this.reverse[i];
+			work[2 * j] = input[offset + 2 * i];
+			work[2 * j + 1] = input[offset + 2 * i + 1];
+		}
+		for (int size = 2; size <= h; size *= 2) {
+			int halfSize = size / 2;
+			int step = h / size;
+			for (int start = 0; start < h; start += size) {
+				for (int j = 0; j < halfSize; j++) {
+					float wr = this.cos[j * step];
+					float wi = -this.sin[j * step];
+					int a = 2 * (start + j);
+					int b = a + size;
+					float tr = wr * work[b] - wi * work[b + 1];
+					float ti = wr * work[b + 1] + wi * work[b];
+					work[b] = work[a] - tr;
+					work[b + 1] = work[a + 1] - ti;
+					work[a] += tr;
+					work[a + 1] += ti;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package processing.sound;
+
+import java.util.stream.IntStream;
+
+import com.jsyn.data.FloatSample;
+
+/**
+ * Band-limited (windowed sinc) sample rate converter, used to convert sound
+ * files to the sample rate of the synthesis engine once when they are loaded,
+ * rather than relying on the linear interpolation of the sample readers on
+ * every playback.
+ */
+class Resampler {
+
+	static boolean enabled = false;
+
+	// number of zero crossings of the sinc on either side of the center
+	private static final int ZERO_CROSSINGS = 16;
+	// table entries per zero crossing, values in between are interpolated
+	private static final int RESOLUTION = 512;
+	// Kaiser window parameter, about 85dB stopband attenuation
+	private static final double BETA = 8.6;
+	// output frames computed per parallel task
+	private static final int CHUNK_FRAMES = 65536;
+
+	private static float[] kernel;
+
+	/**
+	 * One side of the windowed sinc, sampled at RESOLUTION points per zero
+	 * crossing
+	 */
+	private static synchronized float[] getKernel() {
+		if (Resampler.kernel == null) {
+			float[] kernel = new float[ZERO_CROSSINGS * RESOLUTION + 2];
+			double i0Beta = Resampler.besselI0(BETA);
+			for (int i = 0; i < kernel.length; i++) {
+				double x = (double) i / RESOLUTION;
+				double sinc = i == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+				double r = x / ZERO_CROSSINGS;
+				double window = r >= 1 ? 0 : Resampler.besselI0(BETA * Math.sqrt(1 - r * r)) / i0Beta;
+				kernel[i] = (float) (sinc * window);
+			}
+			Resampler.kernel = kernel;
+		}
+		return Resampler.kernel;
+	}
+
+	// zeroth order modified Bessel function of the first kind
+	private static double besselI0(double x) {
+		double sum = 1;
+		double term = 1;
+		for (int k = 1; k < 50; k++) {
+			term *= (x / (2 * k)) * (x / (2 * k));
+			sum += term;
+			if (term < 1e-12 * sum) {
+				break;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Convert the sample to the given frame rate. The output frames are
+	 * computed in chunks which are processed in parallel, and every chunk is
+	 * written straight into the returned sample, which uses the given storage
+	 * format (see JSynCompactSample).
+	 */
+	static FloatSample resample(FloatSample input, double frameRate, int bits) {
+		double ratio = frameRate / input.getFrameRate();
+		int channels = input.getChannelsPerFrame();
+		int inFrames = input.getNumFrames();
+		int outFrames = (int) Math.floor(inFrames * ratio);
+		FloatSample result = JSynCompactSample.create(outFrames, channels, bits);
+		result.setFrameRate(frameRate);
+		float[] kernel = Resampler.getKernel();
+
+		// when downsampling, the cutoff needs to be lowered to the new Nyquist
+		// frequency, which stretches the kernel
+		double cutoff = Math.min(1, ratio);
+		double step = 1 / ratio;
+		double halfWidth = ZERO_CROSSINGS / cutoff;
+
+		int chunks = (outFrames + CHUNK_FRAMES - 1) / CHUNK_FRAMES;
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			int start = chunk * CHUNK_FRAMES;
+			int end = Math.min(outFrames, start + CHUNK_FRAMES);
+			float[] output = new float[(end - start) * channels];
+			for (int j = start; j < end; j++) {
+				double t = j * step;
+				int first = Math.max(0, (int) Math.ceil(t - halfWidth));
+				int last = Math.min(inFrames - 1, (int) Math.floor(t + halfWidth));
+				for (int c = 0; c < channels; c++) {
+					double sum = 0;
+					for (int k = first; k <= last; k++) {
+						// position in the kernel table, with linear interpolation
+						double position = Math.abs(t - k) * cutoff * RESOLUTION;
+						int index = (int) position;
+						double fraction = position - index;
+						double weight = kernel[index] + fraction * (kernel[index + 1] - kernel[index]);
+						sum += weight * input.readDouble(k * channels + c);
+					}
+					output[(j - start) * channels + c] = (float) (sum * cutoff);
+				}
+			}
+			// chunks cover separate frames of the sample, so they can be
+			// written concurrently
+			result.write(start, output, 0, end - start);
+		});
+		return result;
+	}
+}
@@ -0,0 +1,164 @@
+package processing.sound;
+
+import com.jsyn.ports.UnitOutputPort;
+
+import processing.core.PApplet;
+
+/**
+ * This is a Short-Time Fourier Transform (STFT) analyzer. Unlike the 
+ * <b>FFT</b> analyzer, which only computes the spectrum of the most recent 
+ * audio whenever <b>analyze()</b> is called, the STFT analyzer continuously 
+ * computes a new spectrum every time a fixed number of samples (the hop 
+ * size) has come in. The spectra are collected in a queue, from which they 
+ * can be retrieved one by one using <b>next()</b>, so that no part of the 
+ * audio stream is missed regardless of the sketch's frame rate. This makes 
+ * it suitable for drawing spectrograms or detecting onsets.
+ * 
+ * @webref Analysis:STFT
+ * @webBrief Continuously computes the spectrum of an audio stream at regular 
+ * intervals.
+ * @see FFT
+ **/
+public class STFT extends Analyzer {
+
+	public float[] spectrum;
+
+	private JSynSTFT stft;
+	private long lastFrame = -1;
+
+	public STFT(PApplet parent) {
+		this(parent, 512);
+	}
+
+	public STFT(PApplet parent, int bands) {
+		this(parent, bands, bands);
+	}
+
+	public STFT(PApplet parent, int bands, int hop) {
+		this(parent, bands, hop, 256);
+	}
+
+	/**
+	 * @param parent
+	 *            typically use "this"
+	 * @param bands
+	 *            number of frequency bands of each spectrum. This parameter needs 
+	 *            to be a power of 2 (e.g. 16, 32, 64, 128, ...). The default is 512. 
+	 *            As with the <b>FFT</b>, each spectrum is computed from 2*bands 
+	 *            samples of audio.
+	 * @param hop
+	 *            number of samples between the start of two consecutive spectra. 
+	 *            The default is equal to the number of bands, so that consecutive 
+	 *            spectra overlap by half.
+	 * @param queueSize
+	 *            maximum number of spectra that are held until they are retrieved 
+	 *            using <b>next()</b>. When the queue is full, newly computed 
+	 *            spectra are dropped. The default is 256.
+	 */
+	public STFT(PApplet parent, int bands, int hop, int queueSize) {
+		super(parent);
+		if (bands < 2 || Integer.bitCount(bands) != 1 || bands > 16384) {
+			Engine.printError("number of STFT bands needs to be a power of 2 no larger than 16384");
+		} else if (hop < 1) {
+			Engine.printError("hop size needs to be at least 1");
+		} else if (queueSize < 1) {
+			Engine.printError("queue size needs to be at least 1");
+		} else {
+			this.stft = new JSynSTFT(bands, hop, queueSize);
+			this.spectrum = new float[bands];
+		}
+	}
+
+	protected void removeInput() {
+		this.stft.input.disconnectAll();
+		this.input = null;
+	}
+
+	protected void setInput(UnitOutputPort input) {
+		// superclass makes sure that input unit is actually playing, just connect it
+		this.engine.add(this.stft);
+		this.stft.input.connect(input);
+		this.stft.start();
+	}
+
+	/**
+	 * Returns the number of spectra that have been computed and are waiting 
+	 * to be retrieved with <b>next()</b>.
+	 * 
+	 * @return the number of spectra in the queue
+	 * @webref Analysis:STFT
+	 * @webBrief Returns the number of spectra that are waiting to be retrieved.
+	 **/
+	public int available() {
+		return this.stft.available();
+	}
+
+	public float[] next() {
+		return this.next(this.spectrum);
+	}
+
+	/**
+	 * Retrieves the oldest spectrum from the queue and removes it, or returns 
+	 * null if no new spectrum has been computed since the last call. To process 
+	 * all audio, call <b>next()</b> in a loop until it returns null.
+	 * 
+	 * @param target
+	 *            if provided, writes the spectrum into the given array. The array 
+	 *            needs to have as many elements as this analyzer's number of 
+	 *            frequency bands.
+	 * @return the spectrum, or null if the queue is empty
+	 * @webref Analysis:STFT
+	 * @webBrief Retrieves the oldest spectrum from the queue.
+	 **/
+	public float[] next(float[] target) {
+		if (this.input == null) {
+			Engine.printWarning("this STFT has no sound source connected to it, nothing to analyze");
+		}
+		long frame = this.stft.poll(target);
+		if (frame == -1) {
+			return null;
+		}
+		this.lastFrame = frame;
+		return target;
+	}
+
+	/**
+	 * Returns the time of the spectrum that was last retrieved with 
+	 * <b>next()</b>, measured at the end of its audio, in seconds since the 
+	 * analyzer's input was connected.
+	 * 
+	 * @return time of the last spectrum in seconds
+	 * @webref Analysis:STFT
+	 * @webBrief Returns the time of the spectrum that was last retrieved.
+	 **/
+	public float time() {
+		return (float) this.lastFrame / this.engine.getSampleRate();
+	}
+
+	/**
+	 * Returns the number of spectra that were dropped because the queue was 
+	 * full. If this number grows, call <b>next()</b> more often or use a 
+	 * larger queue or hop size.
+	 * 
+	 * @return the number of dropped spectra
+	 **/
+	public int dropped() {
+		return this.stft.getDropped();
+	}
+
+	// Below are just duplicated methods from superclasses which are required
+	// for the online reference to build the corresponding pages.
+
+	/**
+	 * Define the audio input for the analyzer.
+	 * 
+	 * @param input
+	 *            the input sound source. Can be an oscillator, noise generator,
+	 *            SoundFile or AudioIn.
+	 * @webref Analysis:STFT
+	 * @webBrief Define the audio input for the analyzer.
+	 **/
+	public void input(SoundObject input) {
+		super.input(input);
+	}
+}
@@ -0,0 +1,307 @@
+package processing.sound;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import com.jsyn.data.FloatSample;
+
+/**
+ * Cache of decoded sound file data, indexed by file path. The cache can be
+ * given a memory budget, in which case the least recently used samples are
+ * evicted when it is exceeded, except for samples which are currently being
+ * played back.
+ *
+ * The cache is also a Map from file paths to samples, since that is how
+ * SoundFile.SAMPLECACHE was declared before, so that subclasses of SoundFile
+ * which access it keep working.
+ */
+class SampleCache extends AbstractMap<String, FloatSample> {
+
+	private class Entry {
+		final String path;
+		// in soft reference mode, only the soft reference is set
+		FloatSample sample;
+		SampleReference softSample;
+		long bytes;
+		// the AudioSample objects which have played back this sample (which
+		// don't override equals(), so this is an identity set)
+		Set<AudioSample> users = Collections.newSetFromMap(new WeakHashMap<AudioSample, Boolean>());
+
+		Entry(String path, FloatSample sample) {
+			this.path = path;
+			if (SampleCache.this.soft) {
+				this.softSample = new SampleReference(sample, this);
+			} else {
+				this.sample = sample;
+			}
+			this.bytes = SampleCache.getBytes(sample);
+		}
+
+		FloatSample getSample() {
+			return this.softSample == null ? this.sample : this.softSample.get();
+		}
+
+	}
+
+	// soft reference which is put in the queue of cleared references once
+	// the garbage collector has freed the sample
+	private class SampleReference extends SoftReference<FloatSample> {
+		final Entry entry;
+
+		SampleReference(FloatSample sample, Entry entry) {
+			super(sample, SampleCache.this.cleared);
+			this.entry = entry;
+		}
+	}
+
+	// iterates in access order, i.e. least recently used first
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	// the entry of every cached sample, so that playing() doesn't have to
+	// search for it. only holds the samples weakly, so that it doesn't keep
+	// samples in soft reference mode from being garbage collected
+	private final Map<FloatSample, Entry> bySample = new WeakHashMap<FloatSample, Entry>();
+	// soft references of entries whose sample has been garbage collected
+	private final ReferenceQueue<FloatSample> cleared = new ReferenceQueue<FloatSample>();
+
+	private long maxBytes = Long.MAX_VALUE;
+	private boolean soft = false;
+	private long bytes = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	// heap memory taken up by a sample
+	protected static long getBytes(FloatSample sample) {
+		if (sample instanceof JSynEncodedSample) {
+			return ((JSynEncodedSample) sample).getBytes();
+		}
+		return 4L * sample.getNumFrames() * sample.getChannelsPerFrame();
+	}
+
+	@Override
+	public synchronized FloatSample get(Object path) {
+		Entry entry = this.entries.get(path);
+		FloatSample sample = entry == null ? null : entry.getSample();
+		if (sample == null) {
+			if (entry != null) {
+				// soft reference was cleared by the garbage collector
+				this.removeEntry(entry.path);
+			}
+			this.misses++;
+		} else {
+			this.hits++;
+		}
+		return sample;
+	}
+
+	@Override
+	public FloatSample put(String path, FloatSample sample) {
+		Entry previous;
+		synchronized (this) {
+			previous = this.removeEntry(path);
+			Entry entry = new Entry(path, sample);
+			this.entries.put(path, entry);
+			this.bySample.put(sample, entry);
+			this.bytes += entry.bytes;
+		}
+		this.evict();
+		return previous == null ? null : previous.getSample();
+	}
+
+	@Override
+	public synchronized FloatSample remove(Object path) {
+		Entry entry = this.removeEntry(path);
+		return entry == null ? null : entry.getSample();
+	}
+
+	private Entry removeEntry(Object path) {
+		Entry entry = this.entries.remove(path);
+		if (entry != null) {
+			this.bytes -= entry.bytes;
+			FloatSample sample = entry.getSample();
+			if (sample != null) {
+				this.bySample.remove(sample);
+			}
+		}
+		return entry;
+	}
+
+	@Override
+	public synchronized boolean containsKey(Object path) {
+		return this.entries.containsKey(path);
+	}
+
+	@Override
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	@Override
+	public synchronized void clear() {
+		this.entries.clear();
+		this.bySample.clear();
+		this.bytes = 0;
+	}
+
+	/**
+	 * A snapshot of the cached samples (without the ones that have been
+	 * garbage collected), whose iterator removes entries from the cache
+	 */
+	@Override
+	public synchronized Set<Map.Entry<String, FloatSample>> entrySet() {
+		final List<Map.Entry<String, FloatSample>> snapshot = new ArrayList<Map.Entry<String, FloatSample>>();
+		for (Entry entry : this.entries.values()) {
+			FloatSample sample = entry.getSample();
+			if (sample != null) {
+				snapshot.add(new AbstractMap.SimpleImmutableEntry<String, FloatSample>(entry.path, sample));
+			}
+		}
+		return new AbstractSet<Map.Entry<String, FloatSample>>() {
+			public Iterator<Map.Entry<String, FloatSample>> iterator() {
+				final Iterator<Map.Entry<String, FloatSample>> it = snapshot.iterator();
+				return new Iterator<Map.Entry<String, FloatSample>>() {
+					private Map.Entry<String, FloatSample> current;
+
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					public Map.Entry<String, FloatSample> next() {
+						this.current = it.next();
+						return this.current;
+					}
+
+					public void remove() {
+						it.remove();
+						SampleCache.this.remove(this.current.getKey());
+					}
+				};
+			}
+
+			public int size() {
+				return snapshot.size();
+			}
+		};
+	}
+
+	/**
+	 * Notify the cache that the given AudioSample has started playing back the
+	 * sample, so that it is not evicted while it is playing.
+	 */
+	synchronized void playing(FloatSample sample, AudioSample user) {
+		Entry entry = this.bySample.get(sample);
+		if (entry != null) {
+			entry.users.add(user);
+		}
+	}
+
+	/**
+	 * Remove the entries whose samples have been garbage collected (in soft
+	 * reference mode), so that their memory no longer counts towards the
+	 * budget
+	 */
+	private void expunge() {
+		Reference<? extends FloatSample> reference;
+		while ((reference = this.cleared.poll()) != null) {
+			Entry entry = ((SampleReference) reference).entry;
+			// the path might have been cached again in the meantime (entries
+			// don't override equals(), and unlike get() this doesn't count as
+			// an access)
+			if (this.entries.remove(entry.path, entry)) {
+				this.bytes -= entry.bytes;
+			}
+		}
+	}
+
+	/**
+	 * Evict the least recently used samples that aren't playing until the
+	 * cache is within its budget. AudioSample.isPlaying() looks at the
+	 * sample players, so it is called on a snapshot of the users of every
+	 * entry without holding the cache's monitor.
+	 */
+	private void evict() {
+		Map<Entry, List<AudioSample>> snapshot = new IdentityHashMap<Entry, List<AudioSample>>();
+		synchronized (this) {
+			this.expunge();
+			if (this.bytes <= this.maxBytes) {
+				return;
+			}
+			for (Entry entry : this.entries.values()) {
+				snapshot.put(entry, new ArrayList<AudioSample>(entry.users));
+			}
+		}
+
+		Set<Entry> playing = Collections.newSetFromMap(new IdentityHashMap<Entry, Boolean>());
+		for (Map.Entry<Entry, List<AudioSample>> users : snapshot.entrySet()) {
+			for (AudioSample user : users.getValue()) {
+				if (user.isPlaying()) {
+					playing.add(users.getKey());
+					break;
+				}
+			}
+		}
+
+		synchronized (this) {
+			this.expunge();
+			Iterator<Entry> it = this.entries.values().iterator();
+			while (this.bytes > this.maxBytes && it.hasNext()) {
+				Entry entry = it.next();
+				// entries added after the snapshot was taken are kept
+				if (snapshot.containsKey(entry) && !playing.contains(entry)) {
+					it.remove();
+					FloatSample sample = entry.getSample();
+					if (sample != null) {
+						this.bySample.remove(sample);
+					}
+					this.bytes -= entry.bytes;
+					this.evictions++;
+				}
+			}
+		}
+	}
+
+	void setMaxBytes(long maxBytes) {
+		synchronized (this) {
+			this.maxBytes = maxBytes;
+		}
+		this.evict();
+	}
+
+	synchronized void setSoft(boolean soft) {
+		this.soft = soft;
+	}
+
+	synchronized long getBytes() {
+		this.expunge();
+		return this.bytes;
+	}
+
+	synchronized long getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	synchronized long getHits() {
+		return this.hits;
+	}
+
+	synchronized long getMisses() {
+		return this.misses;
+	}
+
+	synchronized long getEvictions() {
+		return this.evictions;
+	}
+}
@@ -1,9 +1,10 @@
 package processing.sound;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.stream.IntStream;
 
 import com.jsyn.Synthesizer;
-import com.jsyn.data.FloatSample;
 import com.jsyn.devices.AudioDeviceManager;
 import com.jsyn.engine.SynthesisEngine;
 
@@ -25,8 +26,11 @@ import processing.core.PApplet;
  */
 public class Sound {
 
+	// the engine that this object controls when calling use()
+	private Engine engine;
+
 	public Sound(PApplet parent) {
-		Engine.getEngine(parent);
+		this.engine = Engine.getEngine(parent);
 	}
 
 	/**
@@ -51,6 +55,66 @@ public class Sound {
 		this.volume(volume);
 	}
 
+	/**
+	 * @param bufferSize
+	 *            the size of the audio output buffer in frames (see 
+	 *            <b>bufferSize()</b>)
+	 */
+	public Sound(PApplet parent, int sampleRate, int outputDevice, int inputDevice, float volume, int bufferSize) {
+		this(parent, sampleRate, outputDevice, inputDevice, volume);
+		Sound.bufferSize(bufferSize);
+	}
+
+	/**
+	 * Create an additional, independent instance of the sound library, for 
+	 * example to play sound on several sound cards at the same time. Every 
+	 * instance has its own output device, sample rate, volume and synthesis 
+	 * thread, which are configured using the methods of the returned 
+	 * <b>SoundEngine</b> object.<br>
+	 * To create sounds, effects and analyzers on the new instance, first make 
+	 * it current by calling its <b>use()</b> method: all Sound library objects 
+	 * always belong to the instance that was current when they were created. 
+	 * Note that the static configuration methods of the Sound class also apply 
+	 * to the current instance, even when they are called on a Sound object. 
+	 * The instance that is created automatically when the sketch first uses 
+	 * the library can be accessed by calling <b>engine()</b> on a Sound object 
+	 * created before any additional instances.
+	 *
+	 * @param parent
+	 *            typically use "this"
+	 * @return a SoundEngine object representing the new instance
+	 * @see SoundEngine
+	 * @webref Configuration:Sound
+	 * @webBrief Create an additional, independent instance of the sound library.
+	 */
+	public static SoundEngine createEngine(PApplet parent) {
+		return new SoundEngine(Engine.createEngine(parent, false));
+	}
+
+	/**
+	 * Returns the instance of the sound library that was current when this 
+	 * Sound object was created, whose methods configure that instance 
+	 * regardless of which instance is current.
+	 *
+	 * @return the SoundEngine of this Sound object
+	 * @see Sound#createEngine(PApplet)
+	 * @webref Configuration:Sound
+	 */
+	public SoundEngine engine() {
+		return new SoundEngine(this.engine);
+	}
+
+	/**
+	 * Make the instance of the sound library that was current when this Sound 
+	 * object was created the current one again.
+	 *
+	 * @see SoundEngine#use()
+	 * @webref Configuration:Sound
+	 */
+	public void use() {
+		Engine.setCurrentEngine(this.engine);
+	}
+
 	public static AudioDeviceManager getAudioDeviceManager() {
 		return Engine.getAudioDeviceManager();
 	}
@@ -180,6 +244,100 @@ public class Sound {
 		return Sound.sampleRate();
 	}
 
+	/**
+	 * Get or set the latency of the audio output (and input), in seconds. Lower 
+	 * latencies make the sound react more quickly to what is happening in the 
+	 * sketch (live instruments typically want less than 10 milliseconds), but 
+	 * leave the synthesis less time to compute every buffer of audio, which 
+	 * can lead to crackles when playing many sounds at once. Large latencies 
+	 * give complex synthesis networks more CPU headroom.<br>
+	 * The latency is only a suggestion to the sound card driver, the method 
+	 * returns the output latency that was actually granted. Changing the 
+	 * latency while sound is playing causes a short interruption of the audio.
+	 *
+	 * @param latency
+	 *            the suggested latency in seconds, or 0 to use the sound card's 
+	 *            default
+	 * @return the output latency in seconds
+	 * @see Sound#bufferSize(int)
+	 * @webref Configuration:Sound
+	 * @webBrief Get or set the latency of the audio output.
+	 */
+	public static float latency(float latency) {
+		Engine.getEngine().setLatency(latency, latency);
+		return Sound.latency();
+	}
+
+	public static float latency() {
+		return (float) Engine.getEngine().getOutputLatency();
+	}
+
+	/**
+	 * @return the latency of the audio input, in seconds (0 if no input device 
+	 * is in use)
+	 * @see Sound#latency(float)
+	 */
+	public static float inputLatency() {
+		return (float) Engine.getEngine().getInputLatency();
+	}
+
+	/**
+	 * Get or set the size of the audio output buffer in frames. This is an 
+	 * alternative to <b>latency()</b> for specifying the latency in frames (at 
+	 * the current sample rate) rather than seconds, which is what the setting is 
+	 * typically called in audio software. Common buffer sizes are powers of two 
+	 * between 64 and 4096.
+	 *
+	 * @param frames
+	 *            the suggested buffer size in frames, or 0 to use the sound 
+	 *            card's default
+	 * @return the buffer size granted by the sound card
+	 * @see Sound#latency(float)
+	 * @webref Configuration:Sound
+	 * @webBrief Get or set the size of the audio output buffer.
+	 */
+	public static int bufferSize(int frames) {
+		Sound.latency((float) frames / Sound.sampleRate());
+		return Sound.bufferSize();
+	}
+
+	public static int bufferSize() {
+		return (int) Math.round(Engine.getEngine().getOutputLatency() * Sound.sampleRate());
+	}
+
+	/**
+	 * Get or set the number of CPU cores used for sound synthesis. By default 
+	 * all synthesis happens on one thread, which limits the number of sounds 
+	 * that can play at once to what one CPU core can compute. With more 
+	 * threads, sounds that are independent of each other (that is, sounds which 
+	 * aren't modulated by other sounds and don't share an effect with other 
+	 * sounds) are computed in parallel.<br>
+	 * To keep the overhead of coordinating the threads low, the parallel 
+	 * sounds are computed a few blocks (up to 24 frames, less than a 
+	 * millisecond) ahead, so they react slightly later to changes such as 
+	 * <b>amp()</b>, <b>freq()</b> or scheduled events. It is therefore only 
+	 * worth using more threads for sketches that play a lot of sounds at once.
+	 *
+	 * @param threads
+	 *            the number of threads, typically no more than the number of 
+	 *            CPU cores (default 1)
+	 * @return the number of synthesis threads
+	 * @webref Configuration:Sound
+	 * @webBrief Get or set the number of CPU cores used for sound synthesis.
+	 */
+	public static int threads(int threads) {
+		if (threads < 1) {
+			Engine.printError("the number of threads has to be at least 1");
+		} else {
+			Engine.getEngine().profiler.setThreads(threads);
+		}
+		return Sound.threads();
+	}
+
+	public static int threads() {
+		return Engine.getEngine().profiler.getThreads();
+	}
+
 	/**
 	 * Choose the device (sound card) which should be used for grabbing audio input
 	 * using AudioIn.  Note that this setting affects the choice of sound card, which 
@@ -243,6 +401,145 @@ public class Sound {
 		Engine.getEngine().setVolume(volume);
 	}
 
+	/**
+	 * Switch the Sound library to offline rendering. Instead of playing sound on 
+	 * a sound card in real time, audio is only generated when one of the 
+	 * <b>render()</b> methods is called, which computes the requested amount of 
+	 * audio as fast as the CPU allows. In between render calls the synthesis 
+	 * time stands still, so the sketch can change the parameters of its sound 
+	 * objects for every chunk it renders (for example once per video frame). 
+	 * The synthesizer computes audio in buffers of a fixed size though, so if a 
+	 * chunk doesn't end on a buffer boundary (which a video frame's worth of 
+	 * audio usually doesn't), the rest of that buffer is computed with the old 
+	 * parameters and forms the beginning of the next chunk. Parameter changes 
+	 * can therefore take effect up to one buffer (a few milliseconds) late.<br>
+	 * Call this method at the very top of your <b>setup()</b>, before creating 
+	 * any other Sound library objects.
+	 *
+	 * @param parent typically use "this"
+	 * @see Sound#render(String, float)
+	 * @webref Configuration:Sound
+	 * @webBrief Switch the Sound library to faster-than-realtime offline rendering.
+	 */
+	public static void useOfflineRendering(PApplet parent) {
+		if (!Engine.getEngine(parent, new JSynVirtualAudioDeviceManager(0, 2, JSynVirtualAudioDeviceManager.OFFLINE)).isRenderingOffline()) {
+			Engine.printError("failed to switch to offline rendering");
+		}
+	}
+
+	/**
+	 * Switch the Sound library to a virtual audio device that is not backed by 
+	 * any sound card. This is mainly useful for running sketches on headless 
+	 * servers or for automated testing. The library automatically falls back on 
+	 * a clocked stereo virtual device when no working sound card can be found.<br>
+	 * Call this method at the very top of your <b>setup()</b>, before creating 
+	 * any other Sound library objects.
+	 *
+	 * @param parent typically use "this"
+	 * @param inputChannels number of input channels of the virtual device
+	 * @param outputChannels number of output channels of the virtual device
+	 * @param clocked if true, audio is generated at the same pace as on a real 
+	 * sound card. If false, audio is generated as fast as the CPU allows.
+	 * @see Sound#readVirtualOutput(float[])
+	 * @see Sound#writeVirtualInput(float[])
+	 */
+	public static void useVirtualDevice(PApplet parent, int inputChannels, int outputChannels, boolean clocked) {
+		Engine.getEngine(parent, new JSynVirtualAudioDeviceManager(inputChannels, outputChannels,
+				clocked ? JSynVirtualAudioDeviceManager.CLOCKED : JSynVirtualAudioDeviceManager.FREE_RUNNING));
+	}
+
+	/**
+	 * Read the most recently generated output of the virtual audio device into 
+	 * the given array. The data is interleaved, with as many channels as the 
+	 * virtual device has output channels.
+	 *
+	 * @param target the array to write the output data to
+	 * @return the number of values (not frames!) written into the array, which 
+	 * can be less than its length if not enough new output has been generated
+	 * @see Sound#useVirtualDevice(PApplet, int, int, boolean)
+	 */
+	public static int readVirtualOutput(float[] target) {
+		JSynVirtualAudioDeviceManager device = Engine.getEngine().getVirtualDevice();
+		return device == null ? 0 : device.readOutput(target);
+	}
+
+	/**
+	 * Feed audio data into the input of the virtual audio device, from where it 
+	 * can be captured using <b>AudioIn</b>. The data has to be interleaved, with 
+	 * as many channels as the virtual device has input channels.
+	 *
+	 * @param data the audio data to feed into the virtual input
+	 * @see Sound#useVirtualDevice(PApplet, int, int, boolean)
+	 */
+	public static void writeVirtualInput(float[] data) {
+		JSynVirtualAudioDeviceManager device = Engine.getEngine().getVirtualDevice();
+		if (device != null) {
+			device.writeInput(data);
+		}
+	}
+
+	/**
+	 * Whether to feed all output of the virtual audio device back into its 
+	 * input.
+	 *
+	 * @param loopback true to enable the loopback, false to disable it
+	 * @see Sound#useVirtualDevice(PApplet, int, int, boolean)
+	 */
+	public static void virtualLoopback(boolean loopback) {
+		JSynVirtualAudioDeviceManager device = Engine.getEngine().getVirtualDevice();
+		if (device != null) {
+			device.loopback(loopback);
+		}
+	}
+
+	/**
+	 * Render audio into the given array. The array is filled with interleaved 
+	 * frames that have as many channels as the output (2 by default), so 
+	 * rendering 1 second of stereo audio at 44100Hz requires an array of length 
+	 * 88200.
+	 *
+	 * @param target the array to write the rendered audio to
+	 * @return true if the audio was rendered successfully
+	 * @see Sound#useOfflineRendering(PApplet)
+	 */
+	public static boolean render(float[] target) {
+		return Engine.getEngine().render(target);
+	}
+
+	/**
+	 * Render audio into the given audio sample, overwriting all of its frames.
+	 *
+	 * @param target the audio sample to write the rendered audio to. A mono 
+	 * sample only receives the first (left) output channel.
+	 * @return true if the audio was rendered successfully
+	 */
+	public static boolean render(AudioSample target) {
+		return Engine.getEngine().render(target.sample);
+	}
+
+	/**
+	 * Render the given duration of audio into a 16 bit WAV file. The audio is 
+	 * streamed to disk block by block, so even very long renders only require 
+	 * a small, constant amount of memory.
+	 *
+	 * @param filename the path of the WAV file to write, relative to the sketch 
+	 * folder
+	 * @param duration the duration of audio to render, in seconds
+	 * @return true if the audio was rendered successfully
+	 * @webref Configuration:Sound
+	 * @webBrief Render audio faster than real-time.
+	 */
+	public static boolean render(String filename, float duration) {
+		Engine engine = Engine.getEngine();
+		File file = new File(engine.parent == null ? filename : engine.parent.sketchPath(filename));
+		try {
+			return engine.render(file, Math.round((double) duration * engine.getSampleRate()));
+		} catch (IOException e) {
+			Engine.printError("unable to write to sound file " + filename + " (" + e.getMessage() + ")");
+			return false;
+		}
+	}
+
 	/**
 	 * Direct access to the underlying JSyn SynthesisEngine object. Use at your 
 	 * own risk.
@@ -252,6 +549,59 @@ public class Sound {
 		return (SynthesisEngine) Engine.getEngine().synth;
 	}
 
+	/**
+	 * Get the number of frames that the synthesis engine has generated so far. 
+	 * This is the clock used for scheduling events with <b>Sound.schedule()</b>.
+	 *
+	 * @return the current frame of the synthesis engine
+	 * @see Sound#schedule(long, Runnable)
+	 */
+	public static long currentFrame() {
+		return Engine.getEngine().synth.getFrameCount();
+	}
+
+	/**
+	 * Schedule an event to happen at an exact time. Calls like 
+	 * <b>play()</b>, <b>freq()</b> or <b>Env.play()</b> normally take effect 
+	 * whenever the sound card asks for the next buffer of audio, which can be 
+	 * several milliseconds off. Scheduled events are instead run right when the 
+	 * synthesis reaches the given frame (accurate to 8 frames, or a fifth of a 
+	 * millisecond), which makes them ideal for rhythmic sequences, e.g.:<br>
+	 * <code>Sound.schedule(Sound.currentFrame() + 44100, () -> sine.play());</code>
+	 * <br>
+	 * The event is run on the audio synthesis thread, so it should only do 
+	 * quick things like starting and stopping sounds or changing their 
+	 * parameters. Events for frames that have already passed are run as soon 
+	 * as possible.
+	 *
+	 * @param frame
+	 *            the frame of the synthesis engine at which the event should 
+	 *            happen
+	 * @param event
+	 *            the code to run
+	 * @see Sound#currentFrame()
+	 * @see Sound#scheduleIn(float, Runnable)
+	 * @webref Configuration:Sound
+	 * @webBrief Schedule an event to happen at an exact time.
+	 */
+	public static void schedule(long frame, Runnable event) {
+		Engine.getEngine().scheduler.schedule(frame, event);
+	}
+
+	/**
+	 * Schedule an event to happen after the given number of seconds.
+	 *
+	 * @param seconds
+	 *            time from now (as measured by <b>Sound.currentFrame()</b>) 
+	 *            after which the event should happen
+	 * @param event
+	 *            the code to run
+	 * @see Sound#schedule(long, Runnable)
+	 */
+	public static void scheduleIn(float seconds, Runnable event) {
+		Sound.schedule(Sound.currentFrame() + Math.round(seconds * Sound.sampleRate()), event);
+	}
+
 	/**
 	 * Prints information about the sound library's current memory and CPU usage 
 	 * to the console.
@@ -269,13 +619,259 @@ public class Sound {
 		}
 		Engine.println("    output on '" + e.getAudioDeviceManager().getDeviceName(Engine.getEngine().outputDevice) + "': " + e.getAudioDeviceManager().getMaxOutputChannels(Engine.getEngine().outputDevice) + " channels, latency " + Math.round(1000*e.getOutputLatency()) + "ms");
 		Engine.println("\n  nodes in synthesizer network: " + Engine.getEngine().addedUnits.size());
-		long nSamples = 0;
-		for (FloatSample s : SoundFile.SAMPLECACHE.values()) {
-			nSamples += s.getNumFrames() * s.getChannelsPerFrame();
-		}
-		Engine.println("  decoded audio samples held in cache: " + SoundFile.SAMPLECACHE.size() + " (" + nSamples + " frames total)");
+		SampleCache cache = SoundFile.CACHE;
+		Engine.println("  decoded audio samples held in cache: " + cache.size() + " (" + cache.getBytes() / 1024 + "kB" + (cache.getMaxBytes() == Long.MAX_VALUE ? "" : " of " + cache.getMaxBytes() / 1024 + "kB") + "), hits: " + cache.getHits() + ", misses: " + cache.getMisses() + ", evictions: " + cache.getEvictions());
 		Engine.println("  CPU usage: " + Math.round(100 * e.getUsage()) + "%");
+		UnderrunMonitor monitor = Engine.getEngine().underrunMonitor;
+		String slowest = monitor.isMeasuring() ? monitor.getMaxBlockTime() / 1000 + "us" : "not measured (see Sound.profile(true))";
+		Engine.println("  slowest block: " + slowest + " (budget " + monitor.getBlockBudget() / 1000 + "us), underruns: " + monitor.getUnderruns());
 		Engine.println();
+		if (Engine.getEngine().profiler.isProfiling()) {
+			Sound.printProfile();
+		}
+	}
+
+	/**
+	 * Turns per-unit CPU time accounting on or off. While it is turned on, the 
+	 * time that the synthesis thread spends generating the audio of every 
+	 * sound, effect and analyzer is measured, which can be queried using 
+	 * <b>Sound.profile()</b> or printed using <b>Sound.printProfile()</b>. 
+	 * Turning accounting on resets all previous measurements, including the 
+	 * peak load reported by <b>Sound.peakLoad()</b>, which is only measured 
+	 * while accounting is turned on.
+	 * 
+	 * Measuring adds a small overhead to the synthesis thread, so it should only 
+	 * be turned on while debugging performance problems.
+	 * @param enabled whether to measure the CPU time of each unit
+	 * @see Sound#profile()
+	 */
+	public static void profile(boolean enabled) {
+		Engine.getEngine().profiler.setProfiling(enabled);
+	}
+
+	/**
+	 * Get the CPU time accounting information of all units in the synthesis 
+	 * network, sorted with the unit that used the most CPU time first. 
+	 * Accounting has to be turned on with <b>Sound.profile(true)</b> first.
+	 * @return an array of UnitProfile objects, one per unit
+	 * @see UnitProfile
+	 */
+	public static UnitProfile[] profile() {
+		if (!Engine.getEngine().profiler.isProfiling()) {
+			Engine.printWarning("CPU time accounting is not turned on, call Sound.profile(true) first");
+		}
+		return Engine.getEngine().profiler.getProfiles();
+	}
+
+	/**
+	 * Prints a table of the CPU time spent on every unit in the synthesis 
+	 * network to the console, sorted with the unit that used the most CPU time 
+	 * first.
+	 * @see Sound#profile()
+	 */
+	public static void printProfile() {
+		UnitProfile[] profiles = Sound.profile();
+		long total = 0;
+		for (UnitProfile p : profiles) {
+			total += p.totalTime;
+		}
+		Engine.println(String.format("  %-48s %10s %12s %10s %10s %6s", "unit", "blocks", "total (us)", "avg (ns)", "max (ns)", "share"));
+		for (UnitProfile p : profiles) {
+			Engine.println(String.format("  %-48s %10d %12d %10d %10d %5.1f%%", p.name, p.calls, p.totalTime / 1000, p.averageTime(), p.maxTime, total == 0 ? 0f : 100f * p.totalTime / total));
+		}
+		Engine.println();
+	}
+
+	/**
+	 * Get the number of buffer underruns (also called 'xruns') since the sketch 
+	 * was started. An underrun happens when the synthesis can't keep up with 
+	 * the sound card, which is audible as a click or dropout. If your sketch 
+	 * has a method called <b>underrunEvent()</b>, it is called (from a separate 
+	 * thread) whenever an underrun is detected.<br>
+	 * If underruns happen regularly, try playing fewer sounds at once or 
+	 * increasing the latency with <b>Sound.bufferSize()</b>.
+	 *
+	 * @return the number of underruns detected
+	 * @see Sound#underrunTimes()
+	 * @see Sound#peakLoad()
+	 * @webref Configuration:Sound
+	 * @webBrief Get the number of audio dropouts since the sketch was started.
+	 */
+	public static int underruns() {
+		return Engine.getEngine().underrunMonitor.getUnderruns();
+	}
+
+	/**
+	 * @return the times at which the most recent (up to 16) underruns 
+	 * happened, in milliseconds as returned by <b>System.currentTimeMillis()</b>, 
+	 * oldest first
+	 * @see Sound#underruns()
+	 */
+	public static long[] underrunTimes() {
+		return Engine.getEngine().underrunMonitor.getUnderrunTimes();
+	}
+
+	/**
+	 * Get the longest time it took the synthesis to compute a block of audio, 
+	 * relative to the time that it can take at most without falling behind the 
+	 * sound card. Values above 1.0 mean that the synthesis is (at least 
+	 * occasionally) too slow, which eventually leads to underruns.<br>
+	 * Measuring the block processing time adds a small overhead to the 
+	 * synthesis thread, so it is only measured while CPU time accounting is 
+	 * turned on with <b>Sound.profile(true)</b>, otherwise this method returns 
+	 * 0. The measurement is also reset whenever the audio device or latency 
+	 * is changed.
+	 * @see Sound#profile(boolean)
+	 *
+	 * @return the worst block processing time as a fraction of the time budget
+	 * @see Sound#underruns()
+	 */
+	public static float peakLoad() {
+		UnderrunMonitor monitor = Engine.getEngine().underrunMonitor;
+		return (float) monitor.getMaxBlockTime() / monitor.getBlockBudget();
+	}
+
+	/**
+	 * Reset the underrun counter, underrun times and peak load.
+	 * @see Sound#underruns()
+	 */
+	public static void resetUnderruns() {
+		Engine.getEngine().underrunMonitor.reset();
+	}
+
+	/**
+	 * Turn caching of audio device information on or off. To find a working 
+	 * output device, the library has to try to open audio lines on the sound 
+	 * card(s), and switch to the PortAudio driver for devices that don't work 
+	 * with the default driver, which can slow down the start of the sketch. 
+	 * Which devices worked with which driver (as well as their channel counts) 
+	 * is therefore remembered in a small file in your home directory, so that 
+	 * on the next start they can be used without trying them again, until 
+	 * the list of audio devices changes. If you have problems with 
+	 * selecting an output device, try calling this method with 
+	 * <b>false</b> at the very top of <b>setup()</b>.
+	 *
+	 * @param cache
+	 *            whether to use the device cache (default true)
+	 */
+	public static void deviceCache(boolean cache) {
+		DeviceProbeCache.enabled = cache;
+	}
+
+	/**
+	 * Limit the amount of memory used for keeping decoded sound files in the 
+	 * cache (see the <b>cache</b> argument of the <b>SoundFile</b> 
+	 * constructor). When the limit is exceeded, the sound files that haven't 
+	 * been used for the longest time are removed from the cache, except for 
+	 * ones that are currently playing. By default, the cache size is unlimited.
+	 *
+	 * @param maxBytes
+	 *            the maximum size of the cache, in bytes
+	 * @see Sound#sampleCache(long, boolean)
+	 */
+	public static void sampleCache(long maxBytes) {
+		SoundFile.CACHE.setMaxBytes(maxBytes);
+	}
+
+	/**
+	 * @param soft
+	 *            if true, the garbage collector is also allowed to remove sound 
+	 *            files from the cache when memory is running low (applies to 
+	 *            sound files loaded after this call)
+	 */
+	public static void sampleCache(long maxBytes, boolean soft) {
+		SoundFile.CACHE.setSoft(soft);
+		Sound.sampleCache(maxBytes);
+	}
+
+	/**
+	 * Set the number of threads used to decode sound files that are loaded 
+	 * using <b>SoundFile.loadAsync()</b>. By default, as many threads as 
+	 * there are processor cores are used.
+	 *
+	 * @param threads
+	 *            the number of files that can be decoded in parallel
+	 * @see SoundFile#loadAsync(PApplet, String)
+	 */
+	public static void loaderThreads(int threads) {
+		SoundFileLoader.setThreads(threads);
+	}
+
+	/**
+	 * Set how many bits are used to store each sample value of audiosamples 
+	 * and sound files that are created or loaded after this call. By default, 
+	 * samples are stored as 32 bit floating point numbers. Storing them as 16 
+	 * bit integers halves the memory used, without an audible difference for 
+	 * sound files which are 16 bit to begin with. 8 bits (using mu-law 
+	 * encoding) quarter the memory use, at noticeably reduced quality. 
+	 * Reading and writing the data of audiosamples works the same in all 
+	 * cases.<br>
+	 * The setting applies to loads that are started after the call, 
+	 * including those started with <b>SoundFile.loadAsync()</b>, whose files 
+	 * are stored in the format that was selected when <b>loadAsync()</b> 
+	 * was called. Sound files that are already in the sample cache are not 
+	 * decoded again, so loading them returns the cached audio in the format 
+	 * it was first loaded with. To load such a file in a different format, 
+	 * call <b>removeFromCache()</b> on a SoundFile holding it first. 
+	 * Memory-mapped sound files (see <b>memoryMap()</b>) are never 
+	 * converted.
+	 *
+	 * @param bits
+	 *            bits per sample value: 32 (default), 16 or 8
+	 */
+	public static void sampleStorage(int bits) {
+		if (bits != 32 && bits != 16 && bits != 8) {
+			Engine.printError("sample storage has to be 32, 16 or 8 bits");
+		} else {
+			JSynCompactSample.bits = bits;
+		}
+	}
+
+	/**
+	 * Turn caching of decoded sound files on disk on or off. Decoding 
+	 * compressed sound files such as MP3s can take a long time. When the 
+	 * cache is on, <b>SoundFile</b> stores the decoded audio of compressed 
+	 * files in a hidden <b>.sound-cache</b> folder in the sketch folder, so 
+	 * that the next time the sketch is started, the audio can be loaded 
+	 * without decoding it again. Cached files are updated automatically when 
+	 * the original file changes. The folder can be deleted at any time.
+	 *
+	 * @param cache
+	 *            whether to cache decoded sound files on disk (default false)
+	 */
+	public static void decodeCache(boolean cache) {
+		DecodeCache.enabled = cache;
+	}
+
+	/**
+	 * Turn conversion of sound files to the sample rate of the sound engine 
+	 * on or off. When a sound file has a different sample rate than the 
+	 * engine, it has to be converted during playback, which uses a fast but 
+	 * low quality method that can produce audible artifacts. When this 
+	 * option is turned on, sound files are instead converted with high 
+	 * quality once when they are loaded, which makes loading slower but 
+	 * playback cheaper. Memory-mapped sound files are never converted.
+	 *
+	 * @param resample
+	 *            whether to convert sound files when loading them (default false)
+	 * @see Sound#sampleRate(int)
+	 */
+	public static void resample(boolean resample) {
+		Resampler.enabled = resample;
+	}
+
+	/**
+	 * Turn memory-mapping of sound files on or off. When it is on, uncompressed 
+	 * WAV and AIF files are not loaded into memory by <b>SoundFile</b>, but 
+	 * read directly from disk while they are playing. This makes loading even 
+	 * very large files almost instant. Memory-mapped sound files can not be 
+	 * modified using <b>write()</b> or <b>resize()</b>.
+	 *
+	 * @param map
+	 *            whether to memory-map sound files (default false)
+	 */
+	public static void memoryMap(boolean map) {
+		JSynMappedSample.enabled = map;
 	}
 
 	public static void verbose(boolean verbose) {
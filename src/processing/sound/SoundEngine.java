@@ -0,0 +1,164 @@
+package processing.sound;
+
+/**
+ * A SoundEngine represents one instance of the sound library, with its own 
+ * output device, sample rate, volume and synthesis thread. Additional 
+ * instances are created with <b>Sound.createEngine()</b>. Unlike the static 
+ * configuration methods of the <b>Sound</b> class, which always apply to 
+ * the current instance, the methods of a SoundEngine always configure the 
+ * instance it represents, no matter which instance is current.
+ *
+ * @webref Configuration:SoundEngine
+ * @webBrief Represents one instance of the sound library.
+ * @see Sound#createEngine(processing.core.PApplet)
+ */
+public class SoundEngine {
+
+	private final Engine engine;
+
+	SoundEngine(Engine engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * Make this instance of the sound library the current one, so that all 
+	 * subsequently created sounds, effects and analyzers are played on it, and 
+	 * all static configuration methods of the Sound class apply to it.
+	 *
+	 * @webref Configuration:SoundEngine
+	 * @webBrief Make this instance of the sound library the current one.
+	 */
+	public void use() {
+		Engine.setCurrentEngine(this.engine);
+	}
+
+	public int sampleRate() {
+		return this.engine.getSampleRate();
+	}
+
+	/**
+	 * Get or set the internal sample rate of this instance's synthesis engine.
+	 * 
+	 * @param sampleRate
+	 *            the sample rate to be used by the synthesis engine (default 44100)
+	 * @return the internal sample rate used by the synthesis engine
+	 * @see Sound#sampleRate(int)
+	 * @webref Configuration:SoundEngine
+	 */
+	public int sampleRate(int sampleRate) {
+		this.engine.setSampleRate(sampleRate);
+		return this.sampleRate();
+	}
+
+	public float latency() {
+		return (float) this.engine.getOutputLatency();
+	}
+
+	/**
+	 * Get or set the latency of this instance's audio output (and input), in 
+	 * seconds.
+	 *
+	 * @param latency
+	 *            the suggested latency in seconds, or 0 to use the sound card's 
+	 *            default
+	 * @return the output latency in seconds
+	 * @see Sound#latency(float)
+	 * @webref Configuration:SoundEngine
+	 */
+	public float latency(float latency) {
+		this.engine.setLatency(latency, latency);
+		return this.latency();
+	}
+
+	public int bufferSize() {
+		return (int) Math.round(this.engine.getOutputLatency() * this.sampleRate());
+	}
+
+	/**
+	 * Get or set the size of this instance's audio output buffer in frames.
+	 *
+	 * @param frames
+	 *            the suggested buffer size in frames, or 0 to use the sound 
+	 *            card's default
+	 * @return the buffer size granted by the sound card
+	 * @see Sound#bufferSize(int)
+	 * @webref Configuration:SoundEngine
+	 */
+	public int bufferSize(int frames) {
+		this.latency((float) frames / this.sampleRate());
+		return this.bufferSize();
+	}
+
+	public int threads() {
+		return this.engine.profiler.getThreads();
+	}
+
+	/**
+	 * Get or set the number of CPU cores used for this instance's sound 
+	 * synthesis.
+	 *
+	 * @param threads
+	 *            the number of threads (default 1)
+	 * @return the number of synthesis threads
+	 * @see Sound#threads(int)
+	 * @webref Configuration:SoundEngine
+	 */
+	public int threads(int threads) {
+		if (threads < 1) {
+			Engine.printError("the number of threads has to be at least 1");
+		} else {
+			this.engine.profiler.setThreads(threads);
+		}
+		return this.threads();
+	}
+
+	/**
+	 * Choose the device (sound card) which this instance grabs audio input 
+	 * from.
+	 * 
+	 * @param deviceId
+	 *            the device id obtained from Sound.list()
+	 * @param deviceName
+	 *            the device name obtained from Sound.list()
+	 * @see Sound#inputDevice(int)
+	 * @webref Configuration:SoundEngine
+	 */
+	public int inputDevice(int deviceId) {
+		return this.engine.selectInputDevice(deviceId);
+	}
+
+	public int inputDevice(String deviceName) {
+		return this.engine.selectInputDevice(this.engine.getDeviceIdByName(deviceName));
+	}
+
+	/**
+	 * Choose the device (sound card) which this instance's audio output 
+	 * should be sent to.
+	 * 
+	 * @param deviceId
+	 *            the device id obtained from Sound.list()
+	 * @param deviceName
+	 *            the device name obtained from Sound.list()
+	 * @see Sound#outputDevice(int)
+	 * @webref Configuration:SoundEngine
+	 */
+	public int outputDevice(int deviceId) {
+		return this.engine.selectOutputDevice(deviceId);
+	}
+
+	public int outputDevice(String deviceName) {
+		return this.engine.selectOutputDevice(this.engine.getDeviceIdByName(deviceName));
+	}
+
+	/**
+	 * Set the overall output volume of this instance of the sound library.
+	 *
+	 * @param volume
+	 *            the desired output volume, normally between 0.0 and 1.0 (default
+	 *            is 1.0)
+	 * @webref Configuration:SoundEngine
+	 */
+	public void volume(float volume) {
+		this.engine.setVolume(volume);
+	}
+}
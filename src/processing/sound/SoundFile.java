@@ -1,10 +1,10 @@
 package processing.sound;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -27,7 +27,12 @@ import processing.core.PApplet;
  **/
 public class SoundFile extends AudioSample {
 
-	protected static Map<String, FloatSample> SAMPLECACHE = new HashMap<String, FloatSample>();
+	// the library's own cache, which also keeps track of memory use and of
+	// which cached samples are playing
+	static final SampleCache CACHE = new SampleCache();
+	// sound files are looked up and stored through this map, which subclasses
+	// can still replace with a map of their own
+	protected static Map<String, FloatSample> SAMPLECACHE = SoundFile.CACHE;
 
 	public SoundFile(PApplet parent, String path) {
 		this(parent, path, true);
@@ -49,10 +54,31 @@ public class SoundFile extends AudioSample {
 	 *            files, you should set this to false.
 	 */
 	public SoundFile(PApplet parent, String path, boolean cache) {
-		super(parent);
+		this(parent, path, cache, Engine.getEngine(parent), JSynCompactSample.bits);
+	}
+
+	// used by SoundFileLoader to create sound files on its own threads, with
+	// the engine and storage format that were selected when loading started
+	SoundFile(PApplet parent, String path, boolean cache, Engine engine, int bits) {
+		super(engine);
 
 		this.sample = SoundFile.SAMPLECACHE.get(path);
 
+		// null if the path doesn't point to a local file (but e.g. a URL)
+		File file = null;
+		if (this.sample == null && (JSynMappedSample.enabled || DecodeCache.enabled)) {
+			file = SoundFile.findFile(parent, path);
+			if (JSynMappedSample.enabled && file != null) {
+				this.sample = SoundFile.map(file, path);
+			}
+			if (this.sample == null) {
+				this.sample = this.resample(DecodeCache.load(parent, file, bits), bits);
+			}
+			if (this.sample != null && cache) {
+				SoundFile.SAMPLECACHE.put(path, this.sample);
+			}
+		}
+
 		if (this.sample == null) {
 			InputStream fin = parent.createInput(path);
 
@@ -66,7 +92,7 @@ public class SoundFile extends AudioSample {
 
 			try {
 				// load WAV or AIF using JSyn
-				this.sample = SampleLoader.loadFloatSample(fin);
+				this.sample = JSynCompactSample.convert(SampleLoader.loadFloatSample(fin), bits);
 			} catch (IOException e) {
 				// not wav/aiff -- try converting via JavaSound...
 				try {
@@ -81,29 +107,56 @@ public class SoundFile extends AudioSample {
 					// if AudioSystem.isConversionSupported(targetFormat, in.getFormat()) 
 					// returns false, then this will raise an Exception:
 					AudioInputStream converted = AudioSystem.getAudioInputStream(targetFormat, in);
-					// decoded mpeg streams don't know their exact output framelength, so 
-					// no other way than to just decode the whole thing, then allocate the 
-					// array for it...
-					ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-					int nRead;
+					// decoded mpeg streams don't know their exact output framelength, so
+					// decode straight into a sample which grows chunk by chunk. this way
+					// the decoded audio is never copied, and (unless a compact storage
+					// format is used) memory use never exceeds the size of the final sample
+					int channels = converted.getFormat().getChannels();
+					JSynChunkedSample decoded = new JSynChunkedSample(channels);
+					decoded.setFrameRate(converted.getFormat().getSampleRate());
+					DecodeCache.Writer cacheWriter = DecodeCache.store(parent, file, channels, converted.getFormat().getSampleRate());
 					byte[] buf = new byte[65536];
-					while ((nRead = converted.read(buf, 0, buf.length)) != -1) {
-						buffer.write(buf, 0, nRead);
+					float[] data = new float[buf.length / 2];
+					int nRead;
+					int leftover = 0;
+					try {
+						while ((nRead = converted.read(buf, leftover, buf.length - leftover)) != -1) {
+							nRead += leftover;
+							// only decode complete 16 bit values
+							int n = nRead & ~1;
+							SampleLoader.decodeLittleI16ToF32(buf, 0, n, data, 0);
+							decoded.append(data, 0, n / 2);
+							if (cacheWriter != null) {
+								cacheWriter.write(buf, 0, n);
+							}
+							leftover = nRead - n;
+							if (leftover > 0) {
+								buf[0] = buf[n];
+							}
+						}
+						if (cacheWriter != null) {
+							cacheWriter.finish();
+						}
+					} finally {
+						if (cacheWriter != null) {
+							// removes the temporary file if decoding failed
+							cacheWriter.abort();
+						}
 					}
-					buffer.flush();
-					float data[] = new float[buffer.size() / 2];
-					SampleLoader.decodeLittleI16ToF32(buffer.toByteArray(), 0, buffer.size(), data, 0);
-					this.sample = new FloatSample(data, converted.getFormat().getChannels());
-					this.sample.setFrameRate(converted.getFormat().getSampleRate());
+					this.sample = JSynCompactSample.convert(decoded, bits);
 					fin.close();
 				} catch (IOException ee) {
 					Engine.printError("unable to decode sound file " + path);
 					// return dysfunctional SoundFile object
 					return;
 				} catch (UnsupportedAudioFileException ee) {
-					throw new RuntimeException(ee);
+					Engine.printError("unsupported sound file format " + path);
+					// return dysfunctional SoundFile object, like above (this also
+					// makes loadAsync() print the error and return null)
+					return;
 				}
 			}
+			this.sample = this.resample(this.sample, bits);
 			if (cache) {
 				SoundFile.SAMPLECACHE.put(path, this.sample);
 			}
@@ -111,6 +164,83 @@ public class SoundFile extends AudioSample {
 		this.initiatePlayer();
 	}
 
+	/**
+	 * Convert a freshly decoded sample to the sample rate of the engine, if
+	 * resampling on load is turned on (see Sound.resample())
+	 */
+	private FloatSample resample(FloatSample sample, int bits) {
+		if (!Resampler.enabled || sample == null || sample.getFrameRate() == this.engine.getSampleRate()) {
+			return sample;
+		}
+		return Resampler.resample(sample, this.engine.getSampleRate(), bits);
+	}
+
+	/**
+	 * Loads a sound file in the background, without blocking the sketch. 
+	 * This method returns immediately, the sound file is decoded on a 
+	 * separate thread (several files are decoded in parallel). If your 
+	 * sketch has a method <b>void soundFileLoaded(SoundFile file)</b>, it is 
+	 * called right before <b>draw()</b> for every file that has finished 
+	 * loading. Alternatively, use <b>isDone()</b> on the returned object to 
+	 * check whether loading has finished, and <b>get()</b> to retrieve the 
+	 * SoundFile (which waits until it is loaded if it isn't yet).
+	 * 
+	 * If the file can not be found or decoded, an error message is printed, 
+	 * the callback is not called and <b>get()</b> returns null.
+	 * 
+	 * @param parent
+	 *            typically use "this"
+	 * @param path
+	 *            filename of the sound file to be loaded
+	 * @return a Future which provides the loaded SoundFile
+	 * @webref Sampling:SoundFile
+	 * @webBrief Loads a sound file in the background, without blocking the sketch.
+	 * @see Sound#loaderThreads(int)
+	 **/
+	public static Future<SoundFile> loadAsync(PApplet parent, String path) {
+		return SoundFile.loadAsync(parent, path, true);
+	}
+
+	/**
+	 * @param cache
+	 *            keep the sound data in RAM once it has been decoded (default: true)
+	 */
+	public static Future<SoundFile> loadAsync(PApplet parent, String path, boolean cache) {
+		return SoundFileLoader.load(parent, path, cache);
+	}
+
+	boolean isLoaded() {
+		return this.sample != null;
+	}
+
+	/**
+	 * Find the local file for the given path, or return null if there is none
+	 */
+	private static File findFile(PApplet parent, String path) {
+		// same lookup order as PApplet.createInput()
+		File file = new File(parent.dataPath(path));
+		if (!file.isFile()) {
+			file = parent.sketchFile(path);
+		}
+		if (!file.isFile()) {
+			file = new File(path);
+		}
+		return file.isFile() ? file : null;
+	}
+
+	/**
+	 * Memory-map the file if it is an uncompressed WAV or AIFF file, otherwise
+	 * return null so that it is decoded the normal way.
+	 */
+	private static FloatSample map(File file, String path) {
+		try {
+			return JSynMappedSample.map(file);
+		} catch (IOException e) {
+			Engine.printWarning("unable to memory-map " + path + ", loading it into memory instead");
+			return null;
+		}
+	}
+
 	/**
 	 * Remove this SoundFile's decoded audio sample from the cache, allowing
 	 * it to be garbage collected once there are no more references to this
@@ -0,0 +1,118 @@
+package processing.sound;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import processing.core.PApplet;
+
+/**
+ * Decodes sound files on a pool of background threads. Once a file is
+ * loaded, the sketch's 'void soundFileLoaded(SoundFile)' method (if it
+ * exists) is called from the sketch's animation thread, right before the
+ * next call to draw().
+ */
+class SoundFileLoader {
+
+	private static int threads = Runtime.getRuntime().availableProcessors();
+	private static ExecutorService pool;
+
+	// one loader per sketch, which dispatches the callbacks. the loaders only
+	// hold on to their sketch weakly, otherwise the sketch could never be
+	// removed from the map
+	private static final Map<PApplet, SoundFileLoader> loaders = new WeakHashMap<PApplet, SoundFileLoader>();
+
+	private final WeakReference<PApplet> parent;
+	private Method loadedMethod;
+	private final ConcurrentLinkedQueue<SoundFile> loaded = new ConcurrentLinkedQueue<SoundFile>();
+
+	private SoundFileLoader(PApplet parent) {
+		this.parent = new WeakReference<PApplet>(parent);
+		try {
+			this.loadedMethod = parent.getClass().getMethod("soundFileLoaded", SoundFile.class);
+			parent.registerMethod("pre", this);
+		} catch (NoSuchMethodException e) {
+			// no callback
+		}
+	}
+
+	static synchronized Future<SoundFile> load(PApplet parent, String path, boolean cache) {
+		// make sure the engine is created (and registered with the sketch) on
+		// the sketch thread rather than on one of the loader threads, and bind
+		// the sound file to the engine that is current right now, even if
+		// another engine is made current before the file has been loaded. the
+		// same goes for the storage format selected by Sound.sampleStorage()
+		final Engine engine = Engine.getEngine(parent);
+		final int bits = JSynCompactSample.bits;
+
+		SoundFileLoader loader = SoundFileLoader.loaders.get(parent);
+		if (loader == null) {
+			loader = new SoundFileLoader(parent);
+			SoundFileLoader.loaders.put(parent, loader);
+		}
+		if (SoundFileLoader.pool == null) {
+			SoundFileLoader.pool = Executors.newFixedThreadPool(SoundFileLoader.threads, r -> {
+				Thread t = new Thread(r, "Sound file loader");
+				t.setDaemon(true);
+				t.setPriority(Thread.NORM_PRIORITY - 1);
+				return t;
+			});
+		}
+
+		final SoundFileLoader callbackLoader = loader;
+		return SoundFileLoader.pool.submit(() -> {
+			SoundFile file;
+			try {
+				file = new SoundFile(parent, path, cache, engine, bits);
+			} catch (RuntimeException e) {
+				// keep the promise of loadAsync(): print an error, return null
+				Engine.printError("unable to load sound file " + path + ": " + e.getMessage());
+				return null;
+			}
+			if (!file.isLoaded()) {
+				// an error message has already been printed
+				return null;
+			}
+			if (callbackLoader.loadedMethod != null) {
+				callbackLoader.loaded.add(file);
+			}
+			return file;
+		});
+	}
+
+	static synchronized void setThreads(int threads) {
+		if (threads < 1) {
+			Engine.printError("number of loader threads needs to be at least 1");
+			return;
+		}
+		SoundFileLoader.threads = threads;
+		if (SoundFileLoader.pool != null) {
+			// files that are already queued still get loaded by the old pool
+			SoundFileLoader.pool.shutdown();
+			SoundFileLoader.pool = null;
+		}
+	}
+
+	/**
+	 * Called by Processing on the animation thread before every frame
+	 */
+	public void pre() {
+		PApplet parent = this.parent.get();
+		if (parent == null) {
+			return;
+		}
+		SoundFile file;
+		while ((file = this.loaded.poll()) != null) {
+			try {
+				this.loadedMethod.invoke(parent, file);
+			} catch (Exception e) {
+				Engine.printError("error in soundFileLoaded(): " + e.getMessage());
+			}
+		}
+	}
+}
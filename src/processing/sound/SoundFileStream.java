@@ -0,0 +1,551 @@
+package processing.sound;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Semaphore;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import com.jsyn.data.FloatSample;
+import com.jsyn.ports.QueueDataCommand;
+import com.jsyn.ports.QueueDataEvent;
+import com.jsyn.ports.UnitDataQueueCallback;
+import com.jsyn.unitgen.VariableRateDataReader;
+import com.jsyn.unitgen.VariableRateMonoReader;
+import com.jsyn.unitgen.VariableRateStereoReader;
+import com.jsyn.util.SampleLoader;
+
+import processing.core.PApplet;
+
+/**
+ * This is a player for long sound files which, unlike <b>SoundFile</b>, does
+ * not load the entire file into memory. Instead, the file is decoded bit by
+ * bit while it is playing, so that even hour-long files can be played back
+ * instantly and with little memory. Supported formats are: WAV, AIF/AIFF, and
+ * MP3.
+ *
+ * Since the audio data is not kept in memory, several simultaneous playbacks
+ * of the same file are not possible. Use a <b>SoundFile</b> for short sounds
+ * which need to be triggered many times.
+ * @webref Sampling:SoundFileStream
+ * @webBrief A player for long sound files which are decoded while they are
+ * playing.
+ * @see SoundFile
+ **/
+public class SoundFileStream extends SoundObject {
+
+	// frames per chunk of decoded audio, and number of chunks that are queued
+	// to the player ahead of time (about 1.5 seconds at 44.1kHz)
+	private static final int CHUNK_FRAMES = 16384;
+	private static final int CHUNKS = 4;
+
+	private PApplet parent;
+	private String path;
+
+	private int channels;
+	private float frameRate;
+	// -1 if the decoder can't tell (MP3), until the file has been played to
+	// the end once
+	private volatile long frames = -1;
+
+	private VariableRateDataReader player;
+
+	// cued frame and queue status at the start of the current playback, for
+	// computing the playback position (see AudioSample)
+	private long startFrame = 0;
+	private long startFrameCountOffset = 0;
+	private boolean looping = false;
+
+	// counts up whenever playback is stopped or jumps, so that reader threads
+	// and queue callbacks of previous playbacks know that they are obsolete
+	private volatile int generation = 0;
+	private Reader reader;
+	// held while the generation is changed and the player's queue is cleared,
+	// and by reader threads while they check their generation and queue a
+	// chunk, so that no chunk of an obsolete playback can be queued after the
+	// queue has been cleared
+	private final Object lock = new Object();
+
+	// helper variable for making isPlaying() return true for the fraction of a
+	// second after play() was called but audio data hasn't been queued yet
+	private long isPlayingAtLeastUntil = 0;
+
+	/**
+	 * @param parent
+	 *            typically use "this"
+	 * @param path
+	 *            filename of the sound file to be played
+	 */
+	public SoundFileStream(PApplet parent, String path) {
+		super(parent);
+		this.parent = parent;
+		this.path = path;
+
+		try (AudioInputStream in = this.open(0)) {
+			if (in == null) {
+				return;
+			}
+			this.channels = in.getFormat().getChannels();
+			this.frameRate = in.getFormat().getSampleRate();
+			if (in.getFrameLength() != AudioSystem.NOT_SPECIFIED) {
+				this.frames = in.getFrameLength();
+			}
+		} catch (IOException e) {
+			Engine.printError("unable to decode sound file " + path);
+			return;
+		}
+
+		if (this.channels == 2) {
+			this.player = new VariableRateStereoReader();
+		} else if (this.channels == 1) {
+			this.player = new VariableRateMonoReader();
+		} else {
+			Engine.printError("only mono and stereo sound files are supported, " + path + " has " + this.channels + " channels");
+			return;
+		}
+		this.player.rate.set(this.frameRate);
+		this.circuit = new JSynCircuit(this.player.output);
+		this.amplitude = this.player.amplitude;
+	}
+
+	/**
+	 * Open the file as a stream of 16 bit little endian samples, positioned at
+	 * the given frame. Returns null (and prints an error) if the file can't be
+	 * found.
+	 */
+	private AudioInputStream open(long frame) throws IOException {
+		InputStream fin = this.parent.createInput(this.path);
+		// if PApplet.createInput() can't find the file or URL, it prints
+		// an error message and returns null
+		if (fin == null) {
+			Engine.printError("unable to find file " + this.path);
+			return null;
+		}
+		AudioInputStream in;
+		try {
+			// AudioSystem needs a stream that supports mark/reset to detect the format
+			in = AudioSystem.getAudioInputStream(new BufferedInputStream(fin));
+		} catch (UnsupportedAudioFileException e) {
+			fin.close();
+			throw new IOException(e);
+		}
+		AudioFormat targetFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+				in.getFormat().getSampleRate(), 16,
+				in.getFormat().getChannels(), in.getFormat().getChannels() * 2,
+				in.getFormat().getSampleRate(), false);
+		AudioInputStream converted = AudioSystem.getAudioInputStream(targetFormat, in);
+		long bytes = frame * targetFormat.getFrameSize();
+		while (bytes > 0) {
+			long skipped = converted.skip(bytes);
+			if (skipped <= 0) {
+				break;
+			}
+			bytes -= skipped;
+		}
+		return converted;
+	}
+
+	/**
+	 * Background thread which decodes the file into a small number of chunks
+	 * and queues them to the player. A chunk is only refilled once the player
+	 * has finished playing it.
+	 */
+	private class Reader extends Thread {
+		private final int generation;
+		private long frame;
+		private final FloatSample[] chunks = new FloatSample[SoundFileStream.CHUNKS];
+		private final Semaphore freeChunks = new Semaphore(SoundFileStream.CHUNKS);
+
+		Reader(int generation, long frame) {
+			super("SoundFileStream " + path);
+			this.setDaemon(true);
+			this.generation = generation;
+			this.frame = frame;
+			for (int i = 0; i < this.chunks.length; i++) {
+				this.chunks[i] = new FloatSample(SoundFileStream.CHUNK_FRAMES, channels);
+			}
+		}
+
+		private boolean isCurrent() {
+			return this.generation == SoundFileStream.this.generation;
+		}
+
+		public void run() {
+			byte[] bytes = new byte[SoundFileStream.CHUNK_FRAMES * channels * 2];
+			float[] data = new float[SoundFileStream.CHUNK_FRAMES * channels];
+			int next = 0;
+			boolean ended = false;
+			AudioInputStream in = null;
+			try {
+				in = SoundFileStream.this.open(this.frame);
+				while (in != null && this.isCurrent()) {
+					this.freeChunks.acquire();
+					int read = SoundFileStream.read(in, bytes);
+					int n = read / (2 * channels);
+					if (n == 0) {
+						// end of file
+						this.freeChunks.release();
+						in.close();
+						in = null;
+						if (frames == -1) {
+							frames = this.frame;
+						}
+						if (looping && this.isCurrent()) {
+							this.frame = 0;
+							in = SoundFileStream.this.open(0);
+						} else {
+							ended = true;
+						}
+						continue;
+					}
+					SampleLoader.decodeLittleI16ToF32(bytes, 0, n * 2 * channels, data, 0);
+					this.chunks[next].write(0, data, 0, n);
+					QueueDataCommand cmd = player.dataQueue.createQueueDataCommand(this.chunks[next], 0, n);
+					cmd.setCallback(new UnitDataQueueCallback() {
+						public void finished(QueueDataEvent event) {
+							freeChunks.release();
+						}
+						public void looped(QueueDataEvent event) {
+						}
+						public void started(QueueDataEvent event) {
+						}
+					});
+					synchronized (lock) {
+						if (!this.isCurrent()) {
+							break;
+						}
+						player.getSynthesizer().queueCommand(cmd);
+					}
+					this.frame += n;
+					next = (next + 1) % this.chunks.length;
+				}
+				if (ended) {
+					// wait until the player has finished playing all queued
+					// chunks, then remove it from the engine
+					this.freeChunks.acquire(SoundFileStream.CHUNKS);
+					SoundFileStream.this.finished(this.generation);
+				}
+			} catch (InterruptedException e) {
+				// stopped
+			} catch (IOException e) {
+				Engine.printError("error while decoding sound file " + path + ": " + e.getMessage());
+			} finally {
+				if (in != null) {
+					try {
+						in.close();
+					} catch (IOException e) {
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read as many bytes as fit into the buffer (or until the end of the stream)
+	 * @return the number of bytes read
+	 */
+	private static int read(InputStream in, byte[] buffer) throws IOException {
+		int total = 0;
+		int n;
+		while (total < buffer.length && (n = in.read(buffer, total, buffer.length - total)) != -1) {
+			total += n;
+		}
+		return total;
+	}
+
+	private boolean isLoaded() {
+		if (this.player == null) {
+			Engine.printError("the sound file " + this.path + " could not be loaded");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Makes the current reader thread obsolete and clears the player's queue.
+	 * Needs to be called while holding the lock.
+	 */
+	private void stopReader() {
+		this.generation++;
+		if (this.reader != null) {
+			this.reader.interrupt();
+			this.reader = null;
+		}
+		// clearing the queue is itself queued to the synthesizer, after any
+		// chunks that were queued by the obsolete reader
+		this.player.dataQueue.clear();
+	}
+
+	private void startPlayback(long frame) {
+		synchronized (this.lock) {
+			this.stopReader();
+			if (!this.isPlaying) {
+				super.play();
+			}
+			this.startFrame = frame;
+			this.startFrameCountOffset = this.player.dataQueue.getFrameCount();
+			this.reader = new Reader(this.generation, frame);
+			this.reader.start();
+			this.isPlayingAtLeastUntil = System.currentTimeMillis() + 50;
+			this.isPlaying = true;
+		}
+	}
+
+	/**
+	 * Called by the reader thread once the last chunk of a playback that
+	 * doesn't loop has been played, unless playback was stopped or restarted
+	 * in the meantime.
+	 */
+	private void finished(int generation) {
+		synchronized (this.lock) {
+			if (generation == this.generation) {
+				this.generation++;
+				this.reader = null;
+				super.stop();
+				this.startFrame = 0;
+			}
+		}
+	}
+
+	private boolean setStartTime(float time) {
+		if (time < 0) {
+			Engine.printError("absolute position can't be < 0");
+			return false;
+		}
+		long startFrame = Math.round(this.frameRate * time);
+		if (this.frames != -1 && startFrame >= this.frames) {
+			Engine.printError("can't cue past end of sound file (total duration is " + this.duration() + "s)");
+			return false;
+		}
+		this.startFrame = startFrame;
+		return true;
+	}
+
+	/**
+	 * Starts the playback of the sound file. Only plays to the end of the file
+	 * once. If <b>cue()</b> or <b>pause()</b> were called previously, playback
+	 * will resume from the cued position.
+	 *
+	 * @webref Sampling:SoundFileStream
+	 * @webBrief Starts the playback of the sound file.
+	 **/
+	public void play() {
+		if (this.isLoaded()) {
+			this.looping = false;
+			this.startPlayback(this.startFrame);
+		}
+	}
+
+	public void play(float rate) {
+		this.rate(rate);
+		this.play();
+	}
+
+	/**
+	 * @param rate
+	 *            relative playback rate to use. 1 is the original speed. 0.5 is
+	 *            half speed and one octave down. 2 is double the speed and one
+	 *            octave up.
+	 * @param amp
+	 *            the desired playback amplitude of the sound file as a value
+	 *            from 0.0 (complete silence) to 1.0 (full volume)
+	 */
+	public void play(float rate, float amp) {
+		this.amp(amp);
+		this.play(rate);
+	}
+
+	/**
+	 * Starts playback which will loop at the end of the sound file. If
+	 * <b>cue()</b> or <b>pause()</b> were called previously, the first pass
+	 * starts from the cued position.
+	 *
+	 * @webref Sampling:SoundFileStream
+	 * @webBrief Starts playback which will loop at the end of the sound file.
+	 */
+	public void loop() {
+		if (this.isLoaded()) {
+			this.looping = true;
+			this.startPlayback(this.startFrame);
+		}
+	}
+
+	public void loop(float rate) {
+		this.rate(rate);
+		this.loop();
+	}
+
+	/**
+	 * @param rate
+	 *            relative playback rate to use. 1 is the original speed. 0.5 is
+	 *            half speed and one octave down. 2 is double the speed and one
+	 *            octave up.
+	 * @param amp
+	 *            the desired playback amplitude of the sound file as a value
+	 *            from 0.0 (complete silence) to 1.0 (full volume)
+	 */
+	public void loop(float rate, float amp) {
+		this.amp(amp);
+		this.loop(rate);
+	}
+
+	/**
+	 * Jump to a specific position in the sound file while continuing to play
+	 * (or starting to play if it wasn't playing already).
+	 *
+	 * @param time
+	 *            position to jump to, in seconds.
+	 * @webref Sampling:SoundFileStream
+	 * @webBrief Jump to a specific position in the sound file while continuing
+	 * to play.
+	 **/
+	public void jump(float time) {
+		if (this.isLoaded() && this.setStartTime(time)) {
+			this.startPlayback(this.startFrame);
+		}
+	}
+
+	/**
+	 * Cues the playhead to a fixed position in the sound file, stopping
+	 * playback. The next call to <b>play()</b> or <b>loop()</b> will start
+	 * from there.
+	 *
+	 * @param time
+	 *            position in the sound file that the next playback should start
+	 *            from, in seconds.
+	 * @webref Sampling:SoundFileStream
+	 * @webBrief Cues the playhead to a fixed position in the sound file.
+	 **/
+	public void cue(float time) {
+		if (this.isLoaded() && this.setStartTime(time)) {
+			long frame = this.startFrame;
+			this.stop();
+			this.startFrame = frame;
+		}
+	}
+
+	/**
+	 * Stop the playback of the file, but cue it to the current position. The
+	 * next call to <b>play()</b> will continue playing where it left off.
+	 *
+	 * @webref Sampling:SoundFileStream
+	 * @webBrief Stop the playback of the file, but cue it to the current
+	 * position.
+	 */
+	public void pause() {
+		if (this.isPlaying()) {
+			long frame = this.positionFrame();
+			this.stop();
+			this.startFrame = frame;
+		} else {
+			Engine.printWarning("trying to pause a sound file that is not playing");
+		}
+	}
+
+	/**
+	 * Stops the playback, the next playback starts from the beginning of the
+	 * file.
+	 *
+	 * @webref Sampling:SoundFileStream
+	 * @webBrief Stops the playback.
+	 */
+	public void stop() {
+		if (this.player == null) {
+			return;
+		}
+		synchronized (this.lock) {
+			this.stopReader();
+			super.stop();
+			this.startFrame = 0;
+			this.isPlaying = false;
+		}
+	}
+
+	public boolean isPlaying() {
+		synchronized (this.lock) {
+			if (this.isPlaying) {
+				// also see AudioSample.isPlaying()
+				Reader reader = this.reader;
+				this.isPlaying = (reader != null && reader.isAlive()) || this.player.dataQueue.hasMore() || System.currentTimeMillis() < this.isPlayingAtLeastUntil;
+			}
+			return this.isPlaying;
+		}
+	}
+
+	/**
+	 * Set the playback rate of the sound file. 1 is the original speed. 0.5 is
+	 * half speed and one octave down. 2 is double the speed and one octave up.
+	 *
+	 * @param rate
+	 *            Relative playback rate to use.
+	 * @webref Sampling:SoundFileStream
+	 * @webBrief Set the playback rate of the sound file.
+	 **/
+	public void rate(float rate) {
+		if (rate <= 0) {
+			Engine.printError("rate needs to be positive");
+		} else if (this.isLoaded()) {
+			this.player.rate.set(this.frameRate * rate);
+		}
+	}
+
+	/**
+	 * Returns the number of channels of the sound file as an int (1 for mono, 2
+	 * for stereo).
+	 *
+	 * @webref Sampling:SoundFileStream
+	 * @webBrief Returns the number of channels of the sound file.
+	 **/
+	public int channels() {
+		return this.channels;
+	}
+
+	/**
+	 * Returns the number of frames of the sound file. For compressed formats
+	 * such as MP3 the length is only known once the file has been played to
+	 * the end, before that this method returns -1.
+	 *
+	 * @webref Sampling:SoundFileStream
+	 * @webBrief Returns the number of frames of the sound file.
+	 **/
+	public long frames() {
+		return this.frames;
+	}
+
+	/**
+	 * Returns the duration of the sound file in seconds (or -1 if it isn't
+	 * known, see <b>frames()</b>).
+	 *
+	 * @webref Sampling:SoundFileStream
+	 * @webBrief Returns the duration of the sound file in seconds.
+	 **/
+	public float duration() {
+		return this.frames == -1 ? -1 : this.frames / this.frameRate;
+	}
+
+	public int sampleRate() {
+		return Math.round(this.frameRate);
+	}
+
+	public long positionFrame() {
+		if (this.player == null) {
+			return 0;
+		}
+		long position = this.startFrame + this.player.dataQueue.getFrameCount() - this.startFrameCountOffset;
+		return this.frames > 0 ? position % this.frames : position;
+	}
+
+	/**
+	 * Get the current position of the playhead, in seconds.
+	 *
+	 * @webref Sampling:SoundFileStream
+	 * @webBrief Get the current position of the playhead, in seconds.
+	 **/
+	public float position() {
+		return this.positionFrame() / this.frameRate;
+	}
+}
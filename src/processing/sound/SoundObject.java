@@ -15,6 +15,9 @@ import processing.core.PApplet;
 // JSynProcessor if they want to support pan/add.
 public abstract class SoundObject {
 
+	// the engine that this sound object was created on
+	protected Engine engine;
+
 	// subclasses need to initialise this circuit
 	protected JSynCircuit circuit;
 
@@ -27,7 +30,14 @@ public abstract class SoundObject {
 	protected boolean isPlaying = false;
 
 	protected SoundObject(PApplet parent) {
-		Engine.getEngine(parent);
+		this(Engine.getEngine(parent));
+	}
+
+	// for objects which are created on another thread than the sketch's, and
+	// therefore need to be passed the engine that was current when they were
+	// requested (see SoundFileLoader)
+	SoundObject(Engine engine) {
+		this.engine = engine;
 	}
 
 	private void setAmplitude() {
@@ -94,7 +104,7 @@ public abstract class SoundObject {
 	public void play() {
 		// TODO print info message if it's already playing?
 		if (!this.isPlaying) {
-			Engine.getEngine().play(this.circuit);
+			this.engine.play(this.circuit);
 			this.setAmplitude();
 			this.isPlaying = true;
 			// TODO rewire effect if one was set previously (before stopping)?
@@ -113,7 +123,7 @@ public abstract class SoundObject {
 			this.removeEffect(this.circuit.effect);
 		}
 		// also removes the unit implicitly
-		Engine.getEngine().stop(this.circuit);
+		this.engine.stop(this.circuit);
 	}
 
 
@@ -135,8 +145,8 @@ public abstract class SoundObject {
 				this.removeEffect(this.circuit.effect);
 			}
 
-			Engine.getEngine().add(effect.left);
-			Engine.getEngine().add(effect.right);
+			this.engine.add(effect.left);
+			this.engine.add(effect.right);
 			this.circuit.setEffect(effect);
 		}
 	}
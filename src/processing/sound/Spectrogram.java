@@ -0,0 +1,302 @@
+package processing.sound;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.jsyn.data.FloatSample;
+import com.jsyn.data.HannWindow;
+import com.jsyn.data.SpectralWindow;
+
+/**
+ * A Spectrogram holds the frequency spectra of an entire audio sample,
+ * computed at regular intervals (the hop size) in the same way as by the
+ * <b>STFT</b> analyzer. Spectrograms are created using the
+ * <b>spectrogram()</b> method of <b>AudioSample</b> or <b>SoundFile</b>,
+ * which analyzes the sample on all available processor cores at once.
+ *
+ * @webref Analysis:Spectrogram
+ * @webBrief Holds the frequency spectra of an entire audio sample.
+ * @see AudioSample#spectrogram(int, int)
+ * @see STFT
+ **/
+public class Spectrogram {
+
+	// number of spectra computed by one parallel task
+	private static final int FRAMES_PER_TASK = 16;
+
+	// the spectrograms that have already been computed for one sample
+	private static class CacheEntry {
+		final WeakReference<FloatSample> sample;
+		final List<Spectrogram> spectrograms = new CopyOnWriteArrayList<Spectrogram>();
+
+		CacheEntry(FloatSample sample) {
+			this.sample = new WeakReference<FloatSample>(sample);
+		}
+	}
+
+	// only holds the (few) samples that actually have cached spectrograms, and
+	// can be searched without locking, so that invalidate() is cheap for all
+	// other samples
+	private static final List<CacheEntry> cache = new CopyOnWriteArrayList<CacheEntry>();
+
+	private final int frames;
+	private final int bands;
+	private final int hop;
+	// spectra one after the other
+	private final float[] data;
+
+	private Spectrogram(int frames, int bands, int hop) {
+		this.frames = frames;
+		this.bands = bands;
+		this.hop = hop;
+		this.data = new float[frames * bands];
+	}
+
+	private static CacheEntry getCacheEntry(FloatSample sample) {
+		for (CacheEntry entry : Spectrogram.cache) {
+			if (entry.sample.get() == sample) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	static Spectrogram get(FloatSample sample, int bands, int hop, boolean cache) {
+		if (!cache) {
+			return Spectrogram.compute(sample, bands, hop);
+		}
+		CacheEntry entry = Spectrogram.getCacheEntry(sample);
+		if (entry == null) {
+			synchronized (Spectrogram.cache) {
+				// forget samples that have been garbage collected
+				Spectrogram.cache.removeIf(e -> e.sample.get() == null);
+				entry = Spectrogram.getCacheEntry(sample);
+				if (entry == null) {
+					entry = new CacheEntry(sample);
+					Spectrogram.cache.add(entry);
+				}
+			}
+		}
+		for (Spectrogram spectrogram : entry.spectrograms) {
+			if (spectrogram.bands == bands && spectrogram.hop == hop) {
+				return spectrogram;
+			}
+		}
+		Spectrogram spectrogram = Spectrogram.compute(sample, bands, hop);
+		if (spectrogram != null) {
+			synchronized (Spectrogram.cache) {
+				// invalidate() removes the entry when the sample's data is changed,
+				// the spectrogram might then have been computed from outdated data
+				if (Spectrogram.cache.contains(entry)) {
+					entry.spectrograms.add(spectrogram);
+				}
+			}
+		}
+		return spectrogram;
+	}
+
+	/**
+	 * Discard all cached spectrograms of the given sample, called when its
+	 * data is changed. Removing the entry also keeps spectrograms that are
+	 * being computed right now from being cached.
+	 */
+	static void invalidate(FloatSample sample) {
+		CacheEntry entry = Spectrogram.getCacheEntry(sample);
+		if (entry != null) {
+			synchronized (Spectrogram.cache) {
+				Spectrogram.cache.remove(entry);
+			}
+		}
+	}
+
+	/**
+	 * Spectrum i is computed from the 2*bands frames starting at frame
+	 * i*hop, which are the same frames that the i-th spectrum of an STFT
+	 * analyzer is computed from when the sample is played back. Like the
+	 * STFT analyzer, only full windows are analyzed, except that samples
+	 * shorter than one window get a single spectrum padded with silence.
+	 */
+	private static Spectrogram compute(FloatSample sample, int bands, int hop) {
+		int windowSize = 2 * bands;
+		int frames = Math.max(1, (sample.getNumFrames() - windowSize) / hop + 1);
+		if ((long) frames * bands > Integer.MAX_VALUE) {
+			Engine.printError("the spectrogram would be too large, use a larger hop size or fewer bands");
+			return null;
+		}
+		Spectrogram spectrogram = new Spectrogram(frames, bands, hop);
+		ForkJoinPool.commonPool().invoke(spectrogram.new Task(sample, new HannWindow(windowSize), 0, frames));
+		return spectrogram;
+	}
+
+	private class Task extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final FloatSample sample;
+		private final SpectralWindow window;
+		private final int from;
+		private final int to;
+
+		Task(FloatSample sample, SpectralWindow window, int from, int to) {
+			this.sample = sample;
+			this.window = window;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > FRAMES_PER_TASK) {
+				int middle = (this.from + this.to) >>> 1;
+				RecursiveAction.invokeAll(new Task(this.sample, this.window, this.from, middle),
+						new Task(this.sample, this.window, middle, this.to));
+				return;
+			}
+
+			int windowSize = 2 * Spectrogram.this.bands;
+			int channels = this.sample.getChannelsPerFrame();
+			int sampleFrames = this.sample.getNumFrames();
+			float[] interleaved = new float[windowSize * channels];
+			float[] real = new float[windowSize];
+			float[] work = new float[windowSize];
+			float[] magnitudes = new float[windowSize];
+			RealFFT fft = RealFFT.get(windowSize);
+
+			for (int frame = this.from; frame < this.to; frame++) {
+				int start = frame * Spectrogram.this.hop;
+				int length = Math.min(windowSize, sampleFrames - start);
+				this.sample.read(start, interleaved, 0, length);
+				for (int i = 0; i < windowSize; i++) {
+					float value = 0;
+					if (i < length) {
+						// mix down to mono
+						for (int c = 0; c < channels; c++) {
+							value += interleaved[i * channels + c];
+						}
+						value /= channels;
+					}
+					real[i] = value * (float) this.window.get(i);
+				}
+				// transform the full window and keep the lower half of the bins,
+				// like the STFT analyzer
+				fft.magnitudes(real, 0, work, magnitudes, 4f / windowSize);
+				System.arraycopy(magnitudes, 0, Spectrogram.this.data, frame * Spectrogram.this.bands, Spectrogram.this.bands);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of spectra of the spectrogram.
+	 *
+	 * @return the number of spectra
+	 * @webref Analysis:Spectrogram
+	 * @webBrief Returns the number of spectra of the spectrogram.
+	 **/
+	public int frames() {
+		return this.frames;
+	}
+
+	/**
+	 * Returns the number of frequency bands of every spectrum.
+	 *
+	 * @return the number of frequency bands
+	 * @webref Analysis:Spectrogram
+	 * @webBrief Returns the number of frequency bands of every spectrum.
+	 **/
+	public int bands() {
+		return this.bands;
+	}
+
+	/**
+	 * Returns the number of audio frames between the starts of two consecutive
+	 * spectra. The spectrum with index <code>i</code> was computed from the
+	 * audio starting at frame <code>i * hop()</code>.
+	 *
+	 * @return the hop size in audio frames
+	 **/
+	public int hop() {
+		return this.hop;
+	}
+
+	/**
+	 * Returns the magnitude of one frequency band of one of the spectra.
+	 *
+	 * @param frame
+	 *            index of the spectrum, between 0 and frames() - 1
+	 * @param band
+	 *            index of the frequency band, between 0 and bands() - 1
+	 * @return the magnitude of the frequency band
+	 * @webref Analysis:Spectrogram
+	 * @webBrief Returns the magnitude of one frequency band of one of the spectra.
+	 **/
+	public float get(int frame, int band) {
+		return this.data[frame * this.bands + band];
+	}
+
+	public float[] spectrum(int frame) {
+		return this.spectrum(frame, new float[this.bands]);
+	}
+
+	/**
+	 * Copies one of the spectra into an array.
+	 *
+	 * @param frame
+	 *            index of the spectrum, between 0 and frames() - 1
+	 * @param target
+	 *            if provided, writes the spectrum into the given array, which
+	 *            needs to have as many elements as there are frequency bands
+	 * @return the spectrum
+	 * @webref Analysis:Spectrogram
+	 * @webBrief Copies one of the spectra into an array.
+	 **/
+	public float[] spectrum(int frame, float[] target) {
+		System.arraycopy(this.data, frame * this.bands, target, 0, this.bands);
+		return target;
+	}
+
+	/**
+	 * Returns the largest magnitude in the spectrogram, which can be used to
+	 * normalize it for display.
+	 *
+	 * @return the largest magnitude
+	 **/
+	public float max() {
+		float max = 0;
+		for (float value : this.data) {
+			max = Math.max(max, value);
+		}
+		return max;
+	}
+
+	/**
+	 * Returns a smaller version of the spectrogram, for example to draw it
+	 * with one value per pixel. Every value of the new spectrogram is the
+	 * largest of the values of the area of the original spectrogram it
+	 * covers, so that short events don't disappear.
+	 *
+	 * @param frames
+	 *            number of spectra of the new spectrogram
+	 * @param bands
+	 *            number of frequency bands of the new spectrogram
+	 * @return the downsampled spectrogram
+	 * @webref Analysis:Spectrogram
+	 * @webBrief Returns a smaller version of the spectrogram.
+	 **/
+	public Spectrogram downsample(int frames, int bands) {
+		frames = Math.max(1, Math.min(frames, this.frames));
+		bands = Math.max(1, Math.min(bands, this.bands));
+		int hop = (int) Math.max(1, (long) this.hop * this.frames / frames);
+		Spectrogram result = new Spectrogram(frames, bands, hop);
+		for (int frame = 0; frame < this.frames; frame++) {
+			int row = (int) ((long) frame * frames / this.frames) * bands;
+			for (int band = 0; band < this.bands; band++) {
+				int index = row + (int) ((long) band * bands / this.bands);
+				result.data[index] = Math.max(result.data[index], this.data[frame * this.bands + band]);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,83 @@
+package processing.sound;
+
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * A fixed pool of threads that help the synthesis thread compute independent 
+ * parts of the synthesis network in parallel. Every block of audio, the 
+ * synthesis thread hands out a number of jobs which are then picked up by 
+ * whichever thread (including the synthesis thread itself) is free first. 
+ * The call only returns once all jobs are done.
+ */
+class SynthesisWorkers {
+
+	private final Phaser phaser;
+	private final int threads;
+
+	private volatile IntConsumer job;
+	private volatile int jobCount;
+	private final AtomicInteger nextJob = new AtomicInteger();
+
+	/**
+	 * @param threads the total number of threads, including the synthesis 
+	 * thread
+	 */
+	SynthesisWorkers(int threads) {
+		this.threads = threads;
+		// all workers plus the synthesis thread have to arrive at the phaser 
+		// twice per block: once to start working, and once when they're done
+		this.phaser = new Phaser(threads);
+		for (int i = 1; i < threads; i++) {
+			Thread t = new Thread(this::work, "Sound synthesis worker " + i);
+			t.setDaemon(true);
+			t.setPriority(Thread.MAX_PRIORITY);
+			t.start();
+		}
+	}
+
+	int getThreads() {
+		return this.threads;
+	}
+
+	private void work() {
+		while (this.phaser.arriveAndAwaitAdvance() >= 0) {
+			this.runJobs();
+			if (this.phaser.arriveAndAwaitAdvance() < 0) {
+				break;
+			}
+		}
+	}
+
+	private void runJobs() {
+		int i;
+		while ((i = this.nextJob.getAndIncrement()) < this.jobCount) {
+			try {
+				this.job.accept(i);
+			} catch (RuntimeException e) {
+				// an exception must not stop a worker, or everyone would wait for it
+				Engine.printError("error in synthesis worker: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Run the given job for all numbers from 0 to jobCount - 1, and wait for 
+	 * all of them to complete.
+	 */
+	void run(int jobCount, IntConsumer job) {
+		this.job = job;
+		this.jobCount = jobCount;
+		this.nextJob.set(0);
+		// wake up the workers
+		this.phaser.arriveAndAwaitAdvance();
+		this.runJobs();
+		// wait for the workers to finish their last jobs
+		this.phaser.arriveAndAwaitAdvance();
+	}
+
+	void shutdown() {
+		this.phaser.forceTermination();
+	}
+}
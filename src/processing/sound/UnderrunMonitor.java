@@ -0,0 +1,207 @@
+package processing.sound;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.jsyn.Synthesizer;
+
+import processing.core.PApplet;
+
+/**
+ * Keeps track of how long the synthesis thread takes to compute every block of 
+ * audio, and detects when it falls so far behind that the sound card must 
+ * have run out of audio to play (an underrun, or 'xrun').
+ *
+ * Underruns are detected by comparing the number of frames generated since the 
+ * device was started against the system timer. Since the synthesizer hands 
+ * its output to the device one buffer at a time, the generated audio only 
+ * counts as late once it falls behind by more than the device's (granted) 
+ * output latency. This estimate is slightly optimistic: underruns that are 
+ * shorter than the latency can go unnoticed, but there are no false alarms.
+ *
+ * Measuring the time it takes to compute a block requires the profiler to 
+ * pull all units itself, so it is only done while CPU time accounting is 
+ * explicitly turned on (see Sound.profile()).
+ */
+class UnderrunMonitor {
+
+	// how many of the most recent underrun timestamps to keep
+	static final int HISTORY = 16;
+
+	private int frameRate;
+	private boolean realTime = true;
+	// how far the generated audio may fall behind the system timer, in 
+	// nanoseconds
+	private volatile long tolerance;
+
+	// system time when the device started playing frame 0, in nanoseconds
+	private long clockStart = -1;
+	private long framesGenerated;
+
+	private volatile int underruns = 0;
+	private final long[] underrunTimes = new long[UnderrunMonitor.HISTORY];
+	private volatile long maxBlockTime = 0;
+	private volatile boolean measuring = false;
+
+	// sketch method that is called for every underrun, if it exists
+	private PApplet parent;
+	private Method underrunEventMethod;
+	private ExecutorService eventThread;
+
+	/**
+	 * Called whenever the audio device streams are (re)opened, before the 
+	 * synthesis thread is started. Since the new device (or latency) can 
+	 * have a different time budget, the peak block time is reset as well.
+	 * @param realTime false if the device isn't paced by a sound card (such as 
+	 * the offline renderer), in which case there can not be any underruns
+	 */
+	synchronized void start(int frameRate, boolean realTime) {
+		this.frameRate = frameRate;
+		this.realTime = realTime;
+		this.tolerance = this.getBlockBudget();
+		this.clockStart = -1;
+		this.framesGenerated = 0;
+		this.maxBlockTime = 0;
+	}
+
+	/**
+	 * Called once the device streams have been opened, with the output 
+	 * latency (in seconds) that the device actually granted
+	 */
+	void setLatency(double latency) {
+		this.tolerance = Math.max(this.getBlockBudget(), Math.round(1e9 * latency));
+	}
+
+	/**
+	 * Called from the synthesis thread at the start of every block
+	 */
+	void blockStarted(long time) {
+		if (!this.realTime) {
+			return;
+		}
+		if (this.clockStart == -1) {
+			this.clockStart = time;
+		}
+		// how far the generated audio is ahead of what the device has played
+		long ahead = this.clockStart + 1000000000L * this.framesGenerated / this.frameRate - time;
+		if (ahead < -this.tolerance) {
+			// the device has played silence in the meantime, resynchronize
+			this.clockStart -= ahead;
+			this.underrun();
+		}
+		this.framesGenerated += Synthesizer.FRAMES_PER_BLOCK;
+	}
+
+	/**
+	 * Called from the synthesis thread once all units have been computed for 
+	 * the current block
+	 */
+	void blockFinished(long blockTime) {
+		if (this.realTime && blockTime > this.maxBlockTime) {
+			this.maxBlockTime = blockTime;
+		}
+	}
+
+	private void underrun() {
+		synchronized (this.underrunTimes) {
+			this.underrunTimes[this.underruns % UnderrunMonitor.HISTORY] = System.currentTimeMillis();
+			this.underruns++;
+		}
+		if (this.underrunEventMethod != null) {
+			// never run sketch code on the synthesis thread
+			this.eventThread.execute(() -> {
+				try {
+					this.underrunEventMethod.invoke(this.parent);
+				} catch (InvocationTargetException e) {
+					Engine.printError("error in underrunEvent(): " + e.getCause());
+				} catch (IllegalAccessException e) {
+					Engine.printError("underrunEvent() needs to be public");
+				}
+			});
+		}
+	}
+
+	/**
+	 * Look for a method 'void underrunEvent()' in the sketch, which is then 
+	 * called (from a separate thread) whenever an underrun is detected. Like 
+	 * Processing's own event methods, the method is only looked up once.
+	 */
+	void registerEventMethod(PApplet parent) {
+		if (this.parent == parent) {
+			return;
+		}
+		try {
+			this.underrunEventMethod = parent.getClass().getMethod("underrunEvent");
+			this.parent = parent;
+			this.eventThread = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "Sound underrunEvent");
+				t.setDaemon(true);
+				return t;
+			});
+		} catch (NoSuchMethodException e) {
+			// no callback
+		}
+	}
+
+	int getUnderruns() {
+		return this.underruns;
+	}
+
+	/**
+	 * @return system times (in milliseconds) of the most recent underruns, 
+	 * oldest first
+	 */
+	long[] getUnderrunTimes() {
+		synchronized (this.underrunTimes) {
+			int n = Math.min(this.underruns, UnderrunMonitor.HISTORY);
+			long[] times = new long[n];
+			for (int i = 0; i < n; i++) {
+				times[i] = this.underrunTimes[(this.underruns - n + i) % UnderrunMonitor.HISTORY];
+			}
+			return times;
+		}
+	}
+
+	/**
+	 * @return whether the time it takes to compute every block is measured
+	 */
+	boolean isMeasuring() {
+		return this.measuring;
+	}
+
+	/**
+	 * Turn measuring of the block processing time on or off, turning it on 
+	 * resets the peak block time
+	 */
+	void setMeasuring(boolean measuring) {
+		if (measuring && !this.measuring) {
+			this.maxBlockTime = 0;
+		}
+		this.measuring = measuring;
+	}
+
+	/**
+	 * @return the longest time it took to compute a block of audio while 
+	 * measuring was turned on, in nanoseconds
+	 */
+	long getMaxBlockTime() {
+		return this.maxBlockTime;
+	}
+
+	/**
+	 * @return the time available for computing one block of audio, in 
+	 * nanoseconds
+	 */
+	long getBlockBudget() {
+		return 1000000000L * Synthesizer.FRAMES_PER_BLOCK / this.frameRate;
+	}
+
+	void reset() {
+		synchronized (this.underrunTimes) {
+			this.underruns = 0;
+			this.maxBlockTime = 0;
+		}
+	}
+}
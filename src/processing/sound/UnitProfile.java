@@ -0,0 +1,63 @@
+package processing.sound;
+
+import com.jsyn.unitgen.UnitGenerator;
+
+/**
+ * For advanced users: a snapshot of the time that the synthesis thread has 
+ * spent generating the audio of one of the units in the synthesis network, as 
+ * returned by <b>Sound.profile()</b>.
+ *
+ * Times are measured per block of audio (8 frames). For SoundObjects the time 
+ * includes the generation of the raw sound as well as panning, but not any 
+ * effects, which are listed separately.
+ * @see Sound#profile()
+ */
+public class UnitProfile {
+
+	/**
+	 * The unit (typically the <b>JSynCircuit</b> of a SoundObject, or the unit 
+	 * generator of an Effect or Analyzer) which this profile describes.
+	 */
+	public final UnitGenerator unit;
+
+	/**
+	 * A human-readable description of the unit.
+	 */
+	public final String name;
+
+	/**
+	 * The number of blocks of audio that were generated.
+	 */
+	public final long calls;
+
+	/**
+	 * Cumulative time spent generating audio, in nanoseconds.
+	 */
+	public final long totalTime;
+
+	/**
+	 * The longest time it took to generate a single block of audio, in 
+	 * nanoseconds.
+	 */
+	public final long maxTime;
+
+	UnitProfile(UnitGenerator unit, String name, long calls, long totalTime, long maxTime) {
+		this.unit = unit;
+		this.name = name;
+		this.calls = calls;
+		this.totalTime = totalTime;
+		this.maxTime = maxTime;
+	}
+
+	/**
+	 * @return the average time it took to generate a block of audio, in 
+	 * nanoseconds
+	 */
+	public long averageTime() {
+		return this.calls == 0 ? 0 : this.totalTime / this.calls;
+	}
+
+	public String toString() {
+		return this.name + ": " + this.calls + " blocks, " + this.totalTime + "ns total, " + this.averageTime() + "ns average, " + this.maxTime + "ns max";
+	}
+}
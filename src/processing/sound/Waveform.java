@@ -55,7 +55,7 @@ public class Waveform extends Analyzer {
 
 	protected void setInput(UnitOutputPort input) {
 		// superclass makes sure that input unit is actually playing, just connect it
-		Engine.getEngine().add(this.writer);
+		this.engine.add(this.writer);
 		this.writer.input.connect(input);
 		this.writer.start();
 	}
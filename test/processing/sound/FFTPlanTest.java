@@ -0,0 +1,86 @@
+package processing.sound;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class FFTPlanTest {
+
+	private static final int BANDS = 256;
+
+	private static float[] noise(int n) {
+		Random random = new Random(n);
+		float[] data = new float[n];
+		for (int i = 0; i < n; i++) {
+			data[i] = random.nextFloat() - 0.5f;
+		}
+		return data;
+	}
+
+	@Test
+	public void testMatchesAnalyzeSample() {
+		float[] sample = FFTPlanTest.noise(BANDS);
+		FFTPlan plan = new FFTPlan(BANDS);
+		float[] expected = FFT.analyzeSample(sample.clone(), BANDS);
+		assertSame(plan.spectrum, plan.analyze(sample));
+		assertArrayEquals(expected, plan.spectrum, 1e-6f);
+	}
+
+	@Test
+	public void testSampleUntouched() {
+		float[] sample = FFTPlanTest.noise(3 * BANDS);
+		float[] copy = sample.clone();
+		FFTPlan plan = new FFTPlan(BANDS);
+		plan.analyze(sample, BANDS);
+		plan.window(FFTPlan.HANN);
+		plan.analyze(sample, 2 * BANDS, new float[BANDS]);
+		assertArrayEquals(copy, sample, 0);
+	}
+
+	@Test
+	public void testOffsetAndTarget() {
+		float[] sample = FFTPlanTest.noise(3 * BANDS);
+		FFTPlan plan = new FFTPlan(BANDS);
+		float[] target = new float[BANDS];
+		assertSame(target, plan.analyze(sample, BANDS, target));
+		float[] expected = FFT.analyzeSample(Arrays.copyOfRange(sample, BANDS, 2 * BANDS), BANDS);
+		assertArrayEquals(expected, target, 1e-6f);
+	}
+
+	@Test
+	public void testWindow() {
+		float[] sample = FFTPlanTest.noise(BANDS);
+		float[] windowed = new float[BANDS];
+		for (int i = 0; i < BANDS; i++) {
+			double hamming = 0.54 - 0.46 * Math.cos(2 * Math.PI * i / (BANDS - 1));
+			windowed[i] = (float) (sample[i] * hamming);
+		}
+		float[] expected = FFT.analyzeSample(windowed, BANDS);
+
+		FFTPlan plan = new FFTPlan(BANDS);
+		plan.window(FFTPlan.HAMMING);
+		assertArrayEquals(expected, plan.analyze(sample), 1e-6f);
+
+		// back to the plain spectrum
+		plan.window(FFTPlan.RECTANGULAR);
+		assertArrayEquals(FFT.analyzeSample(sample.clone(), BANDS), plan.analyze(sample), 1e-6f);
+	}
+
+	@Test
+	public void testWindowReducesLeakage() {
+		// a sine between two bands leaks into the whole spectrum, much less so
+		// with a Hann window
+		float[] sample = new float[BANDS];
+		for (int i = 0; i < BANDS; i++) {
+			sample[i] = (float) Math.sin(2 * Math.PI * 20.5 * i / BANDS);
+		}
+		FFTPlan plan = new FFTPlan(BANDS);
+		float rectangular = plan.analyze(sample)[60];
+		plan.window(FFTPlan.HANN);
+		float hann = plan.analyze(sample)[60];
+		assertEquals(0, hann, rectangular / 100);
+	}
+}
@@ -1,13 +1,116 @@
 package processing.sound;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import java.util.Arrays;
+import java.util.Random;
 import org.junit.Test;
 
+import com.softsynth.math.FourierMath;
+
 public class FFTTest {
 
+	private static float[] noise(int n, long seed) {
+		Random random = new Random(seed);
+		float[] data = new float[n];
+		for (int i = 0; i < n; i++) {
+			data[i] = random.nextFloat() - 0.5f;
+		}
+		return data;
+	}
+
+	/**
+	 * The magnitudes as they were computed before RealFFT, with a complex
+	 * transform of the real input and an imaginary part of zeros
+	 */
+	private static float[] complexMagnitudes(float[] input) {
+		int n = input.length;
+		float[] real = input.clone();
+		float[] imaginary = new float[n];
+		float[] magnitudes = new float[n];
+		FourierMath.transform(1, n, real, imaginary);
+		FourierMath.calculateMagnitudes(real, imaginary, magnitudes);
+		for (int i = 0; i < n; i++) {
+			magnitudes[i] *= 2;
+		}
+		return magnitudes;
+	}
+
+	/**
+	 * Direct evaluation of the discrete Fourier transform, with the same
+	 * normalization
+	 */
+	private static float[] dftMagnitudes(float[] input) {
+		int n = input.length;
+		float[] magnitudes = new float[n];
+		for (int k = 0; k < n; k++) {
+			double real = 0;
+			double imaginary = 0;
+			for (int i = 0; i < n; i++) {
+				real += input[i] * Math.cos(2 * Math.PI * k * i / n);
+				imaginary -= input[i] * Math.sin(2 * Math.PI * k * i / n);
+			}
+			magnitudes[k] = (float) (Math.sqrt(real * real + imaginary * imaginary) * 4 / n);
+		}
+		return magnitudes;
+	}
+
+	private static float[] realMagnitudes(float[] input) {
+		int n = input.length;
+		float[] magnitudes = new float[n];
+		RealFFT.get(n).magnitudes(input, 0, new float[n], magnitudes, 4f / n);
+		return magnitudes;
+	}
+
 	@Test
-	public void testSomething() {
-		assertEquals(2, 1+1);
+	public void testMatchesFourierMath() {
+		for (int n = 1; n <= 4096; n *= 2) {
+			float[] input = FFTTest.noise(n, n);
+			float[] actual = FFTTest.realMagnitudes(input);
+			// FourierMath takes the cosine from its sine table at an offset of
+			// n/4, which is 0 for n = 2, so size 2 is only checked against the
+			// direct transform
+			if (n != 2) {
+				assertArrayEquals("size " + n, FFTTest.complexMagnitudes(input), actual, 1e-5f);
+			}
+			if (n <= 256) {
+				assertArrayEquals("size " + n, FFTTest.dftMagnitudes(input), actual, 1e-5f);
+			}
+		}
 	}
-}
 
+	@Test
+	public void testSmallSizes() {
+		float[] one = { 0.25f };
+		assertArrayEquals(new float[] { 1 }, FFTTest.realMagnitudes(one), 0);
+		float[] two = { 0.25f, -0.5f };
+		// bins are |x0 + x1| and |x0 - x1|, times 4 / n
+		assertArrayEquals(new float[] { 0.5f, 1.5f }, FFTTest.realMagnitudes(two), 1e-6f);
+	}
+
+	@Test
+	public void testOffsetAndInputUntouched() {
+		float[] input = FFTTest.noise(96, 1);
+		float[] copy = input.clone();
+		float[] expected = FFTTest.complexMagnitudes(Arrays.copyOfRange(input, 32, 96));
+		float[] actual = new float[64];
+		RealFFT.get(64).magnitudes(input, 32, new float[64], actual, 4f / 64);
+		assertArrayEquals(expected, actual, 1e-5f);
+		assertArrayEquals(copy, input, 0);
+	}
+
+	@Test
+	public void testSine() {
+		// a full scale sine at band 5 shows up as a magnitude of 2 in that band
+		// (and its mirror image), see FFT.calculateMagnitudesFromSample()
+		int n = 256;
+		float[] input = new float[n];
+		for (int i = 0; i < n; i++) {
+			input[i] = (float) Math.sin(2 * Math.PI * 5 * i / n);
+		}
+		float[] spectrum = FFT.analyzeSample(input, n);
+		for (int i = 0; i < n; i++) {
+			assertEquals("band " + i, i == 5 || i == n - 5 ? 2 : 0, spectrum[i], 1e-4);
+		}
+	}
+}
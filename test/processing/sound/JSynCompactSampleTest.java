@@ -0,0 +1,101 @@
+package processing.sound;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+import com.jsyn.data.FloatSample;
+
+public class JSynCompactSampleTest {
+
+	/**
+	 * Reference mu-law encoder for 16 bit linear PCM, following the G.711
+	 * reference implementation (linear2ulaw)
+	 */
+	private static int linearToMulaw(int pcm) {
+		int[] segmentEnds = { 0xFF, 0x1FF, 0x3FF, 0x7FF, 0xFFF, 0x1FFF, 0x3FFF, 0x7FFF };
+		int mask;
+		pcm >>= 2;
+		if (pcm < 0) {
+			pcm = -pcm;
+			mask = 0x7F;
+		} else {
+			mask = 0xFF;
+		}
+		pcm = Math.min(pcm, 8159) + (0x84 >> 2);
+		int segment = 0;
+		while (segment < 8 && pcm > segmentEnds[segment] >> 2) {
+			segment++;
+		}
+		if (segment >= 8) {
+			return 0x7F ^ mask;
+		}
+		return ((segment << 4) | ((pcm >> (segment + 1)) & 0xF)) ^ mask;
+	}
+
+	/**
+	 * Reference mu-law decoder (ulaw2linear)
+	 */
+	private static int mulawToLinear(int code) {
+		code = ~code;
+		int t = ((code & 0x0F) << 3) + 0x84;
+		t <<= (code & 0x70) >> 4;
+		return (code & 0x80) != 0 ? 0x84 - t : t - 0x84;
+	}
+
+	@Test
+	public void testMulawReferenceValues() {
+		assertEquals(0xFF, JSynCompactSampleTest.linearToMulaw(0));
+		assertEquals(0xCE, JSynCompactSampleTest.linearToMulaw(1000));
+		assertEquals(0x80, JSynCompactSampleTest.linearToMulaw(32767));
+		assertEquals(0x00, JSynCompactSampleTest.linearToMulaw(-32768));
+		assertEquals(988, JSynCompactSampleTest.mulawToLinear(0xCE));
+		assertEquals(32124, JSynCompactSampleTest.mulawToLinear(0x80));
+		assertEquals(-32124, JSynCompactSampleTest.mulawToLinear(0x00));
+
+		FloatSample sample = JSynCompactSample.create(4, 1, 8);
+		sample.write(new float[] { 0, 1000 / 32767f, 1, -1 });
+		assertEquals(0, sample.readDouble(0), 0);
+		assertEquals(988 / 32768.0, sample.readDouble(1), 0);
+		assertEquals(32124 / 32768.0, sample.readDouble(2), 0);
+		assertEquals(-32124 / 32768.0, sample.readDouble(3), 0);
+	}
+
+	@Test
+	public void testMulawRoundTrip() {
+		// G.711 is defined on 14 bit values, every one of them is encoded and
+		// decoded like by the reference implementation (which drops the lowest
+		// two bits of 16 bit values by rounding down, towards larger
+		// magnitudes for negative values)
+		FloatSample sample = JSynCompactSample.create(1, 1, 8);
+		for (int pcm = -32768; pcm <= 32767; pcm += 4) {
+			sample.writeDouble(0, pcm / 32767.0);
+			int expected = JSynCompactSampleTest.mulawToLinear(JSynCompactSampleTest.linearToMulaw(pcm));
+			assertEquals("pcm value " + pcm, expected / 32768.0, sample.readDouble(0), 0);
+		}
+	}
+
+	@Test
+	public void test16Bit() {
+		FloatSample sample = JSynCompactSample.create(new float[] { 0.5f, -1, 1.5f, 1 / 32768f }, 2, 16);
+		assertEquals(2, sample.getNumFrames());
+		assertEquals(0.5, sample.readDouble(0), 0);
+		assertEquals(-1, sample.readDouble(1), 0);
+		// clipped to the largest 16 bit value
+		assertEquals(32767 / 32768.0, sample.readDouble(2), 0);
+		assertEquals(1 / 32768.0, sample.readDouble(3), 0);
+		assertEquals(8, ((JSynCompactSample) sample).getBytes());
+	}
+
+	@Test
+	public void testConvert() {
+		FloatSample original = new FloatSample(new float[] { 0.25f, -0.25f });
+		original.setFrameRate(22050);
+		FloatSample converted = JSynCompactSample.convert(original, 16);
+		assertEquals(JSynCompactSample.class, converted.getClass());
+		assertEquals(22050, converted.getFrameRate(), 0);
+		assertEquals(-0.25, converted.readDouble(1), 0);
+		// already compact, and 32 bits keeps the original
+		assertEquals(converted, JSynCompactSample.convert(converted, 8));
+		assertEquals(original, JSynCompactSample.convert(original, 32));
+	}
+}
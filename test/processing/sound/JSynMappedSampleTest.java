@@ -0,0 +1,226 @@
+package processing.sound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Test;
+
+public class JSynMappedSampleTest {
+
+	private File file;
+
+	@After
+	public void tearDown() {
+		if (this.file != null) {
+			this.file.delete();
+		}
+	}
+
+	private static byte[] chunk(String id, byte[] data, ByteOrder order) {
+		ByteBuffer buffer = ByteBuffer.allocate(8 + data.length + (data.length & 1)).order(order);
+		buffer.put(id.getBytes(StandardCharsets.US_ASCII));
+		buffer.putInt(data.length);
+		buffer.put(data);
+		return buffer.array();
+	}
+
+	private static byte[] bytes(ByteOrder order, int... shorts) {
+		ByteBuffer buffer = ByteBuffer.allocate(2 * shorts.length).order(order);
+		for (int value : shorts) {
+			buffer.putShort((short) value);
+		}
+		return buffer.array();
+	}
+
+	private static byte[] waveFormat(int format, int channels, int frameRate, int bits) {
+		ByteBuffer fmt = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		fmt.putShort((short) format);
+		fmt.putShort((short) channels);
+		fmt.putInt(frameRate);
+		fmt.putInt(frameRate * channels * bits / 8);
+		fmt.putShort((short) (channels * bits / 8));
+		fmt.putShort((short) bits);
+		return fmt.array();
+	}
+
+	// the sample rate as an 80 bit extended precision number
+	private static byte[] extended(int frameRate) {
+		int exponent = 31 - Integer.numberOfLeadingZeros(frameRate);
+		ByteBuffer buffer = ByteBuffer.allocate(10);
+		buffer.putShort((short) (16383 + exponent));
+		buffer.putLong((long) frameRate << (63 - exponent));
+		return buffer.array();
+	}
+
+	private static byte[] aiffCommon(int channels, int frames, int bits, int frameRate, String compression) {
+		ByteBuffer comm = ByteBuffer.allocate(compression == null ? 18 : 22);
+		comm.putShort((short) channels);
+		comm.putInt(frames);
+		comm.putShort((short) bits);
+		comm.put(JSynMappedSampleTest.extended(frameRate));
+		if (compression != null) {
+			comm.put(compression.getBytes(StandardCharsets.US_ASCII));
+		}
+		return comm.array();
+	}
+
+	private JSynMappedSample map(String riff, String type, ByteOrder order, byte[]... chunks) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write(type.getBytes(StandardCharsets.US_ASCII));
+		for (byte[] chunk : chunks) {
+			body.write(chunk);
+		}
+		this.file = File.createTempFile("mapped", ".tmp");
+		try (FileOutputStream out = new FileOutputStream(this.file)) {
+			out.write(riff.getBytes(StandardCharsets.US_ASCII));
+			out.write(ByteBuffer.allocate(4).order(order).putInt(body.size()).array());
+			body.writeTo(out);
+		}
+		return JSynMappedSample.map(this.file);
+	}
+
+	@Test
+	public void testWaveWithOddChunk() throws IOException {
+		// a 3 byte chunk is followed by a padding byte, which has to be skipped
+		JSynMappedSample sample = this.map("RIFF", "WAVE", ByteOrder.LITTLE_ENDIAN,
+				JSynMappedSampleTest.chunk("LIST", new byte[] { 1, 2, 3 }, ByteOrder.LITTLE_ENDIAN),
+				JSynMappedSampleTest.chunk("fmt ", JSynMappedSampleTest.waveFormat(1, 2, 22050, 16), ByteOrder.LITTLE_ENDIAN),
+				JSynMappedSampleTest.chunk("data", JSynMappedSampleTest.bytes(ByteOrder.LITTLE_ENDIAN, 16384, -32768, 0, 32767), ByteOrder.LITTLE_ENDIAN));
+		assertNotNull(sample);
+		assertEquals(2, sample.getChannelsPerFrame());
+		assertEquals(2, sample.getNumFrames());
+		assertEquals(22050, sample.getFrameRate(), 0);
+		assertEquals(0.5, sample.readDouble(0), 0);
+		assertEquals(-1, sample.readDouble(1), 0);
+		assertEquals(0, sample.readDouble(2), 0);
+		assertEquals(32767 / 32768.0, sample.readDouble(3), 0);
+	}
+
+	@Test
+	public void testWave24Bit() throws IOException {
+		byte[] data = {
+				0x00, 0x00, 0x40, // 0.5
+				0x00, 0x00, (byte) 0x80, // -1
+				(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, // -1 / 2^23
+		};
+		JSynMappedSample sample = this.map("RIFF", "WAVE", ByteOrder.LITTLE_ENDIAN,
+				JSynMappedSampleTest.chunk("fmt ", JSynMappedSampleTest.waveFormat(1, 1, 48000, 24), ByteOrder.LITTLE_ENDIAN),
+				// odd length data chunk, padded at the end of the file
+				JSynMappedSampleTest.chunk("data", data, ByteOrder.LITTLE_ENDIAN));
+		assertNotNull(sample);
+		assertEquals(3, sample.getNumFrames());
+		assertEquals(0.5, sample.readDouble(0), 0);
+		assertEquals(-1, sample.readDouble(1), 0);
+		assertEquals(-1 / 8388608.0, sample.readDouble(2), 0);
+	}
+
+	@Test
+	public void testWave8BitUnsigned() throws IOException {
+		JSynMappedSample sample = this.map("RIFF", "WAVE", ByteOrder.LITTLE_ENDIAN,
+				JSynMappedSampleTest.chunk("fmt ", JSynMappedSampleTest.waveFormat(1, 1, 8000, 8), ByteOrder.LITTLE_ENDIAN),
+				JSynMappedSampleTest.chunk("data", new byte[] { (byte) 128, 0, (byte) 192, (byte) 255 }, ByteOrder.LITTLE_ENDIAN));
+		assertNotNull(sample);
+		assertEquals(0, sample.readDouble(0), 0);
+		assertEquals(-1, sample.readDouble(1), 0);
+		assertEquals(0.5, sample.readDouble(2), 0);
+		assertEquals(127 / 128.0, sample.readDouble(3), 0);
+	}
+
+	@Test
+	public void testWaveFloat() throws IOException {
+		byte[] data = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putFloat(0.25f).putFloat(-0.75f).array();
+		JSynMappedSample sample = this.map("RIFF", "WAVE", ByteOrder.LITTLE_ENDIAN,
+				JSynMappedSampleTest.chunk("fmt ", JSynMappedSampleTest.waveFormat(3, 1, 44100, 32), ByteOrder.LITTLE_ENDIAN),
+				JSynMappedSampleTest.chunk("data", data, ByteOrder.LITTLE_ENDIAN));
+		assertNotNull(sample);
+		assertEquals(0.25, sample.readDouble(0), 0);
+		assertEquals(-0.75, sample.readDouble(1), 0);
+	}
+
+	@Test
+	public void testWaveTruncated() throws IOException {
+		byte[] data = JSynMappedSampleTest.chunk("data", JSynMappedSampleTest.bytes(ByteOrder.LITTLE_ENDIAN, 1, 2, 3, 4), ByteOrder.LITTLE_ENDIAN);
+		// the data chunk claims to be longer than what is left of the file
+		ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(4, 1000);
+		JSynMappedSample sample = this.map("RIFF", "WAVE", ByteOrder.LITTLE_ENDIAN,
+				JSynMappedSampleTest.chunk("fmt ", JSynMappedSampleTest.waveFormat(1, 1, 44100, 16), ByteOrder.LITTLE_ENDIAN),
+				data);
+		assertNotNull(sample);
+		assertEquals(4, sample.getNumFrames());
+	}
+
+	@Test
+	public void testAiffBigEndian() throws IOException {
+		// SSND starts with an offset and block size, the offset skips bytes
+		// before the first sample
+		ByteBuffer ssnd = ByteBuffer.allocate(8 + 2 + 6);
+		ssnd.putInt(2);
+		ssnd.putInt(0);
+		ssnd.putShort((short) 0x7FFF);
+		ssnd.put(JSynMappedSampleTest.bytes(ByteOrder.BIG_ENDIAN, 16384, -16384, -32768));
+		JSynMappedSample sample = this.map("FORM", "AIFF", ByteOrder.BIG_ENDIAN,
+				JSynMappedSampleTest.chunk("NAME", new byte[] { 'a', 'b', 'c' }, ByteOrder.BIG_ENDIAN),
+				JSynMappedSampleTest.chunk("COMM", JSynMappedSampleTest.aiffCommon(1, 3, 16, 44100, null), ByteOrder.BIG_ENDIAN),
+				JSynMappedSampleTest.chunk("SSND", ssnd.array(), ByteOrder.BIG_ENDIAN));
+		assertNotNull(sample);
+		assertEquals(1, sample.getChannelsPerFrame());
+		assertEquals(3, sample.getNumFrames());
+		assertEquals(44100, sample.getFrameRate(), 0);
+		assertEquals(0.5, sample.readDouble(0), 0);
+		assertEquals(-0.5, sample.readDouble(1), 0);
+		assertEquals(-1, sample.readDouble(2), 0);
+	}
+
+	@Test
+	public void testAiff24Bit() throws IOException {
+		ByteBuffer ssnd = ByteBuffer.allocate(8 + 6);
+		ssnd.putInt(0);
+		ssnd.putInt(0);
+		ssnd.put(new byte[] { 0x40, 0x00, 0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF });
+		JSynMappedSample sample = this.map("FORM", "AIFF", ByteOrder.BIG_ENDIAN,
+				JSynMappedSampleTest.chunk("COMM", JSynMappedSampleTest.aiffCommon(1, 2, 24, 96000, null), ByteOrder.BIG_ENDIAN),
+				JSynMappedSampleTest.chunk("SSND", ssnd.array(), ByteOrder.BIG_ENDIAN));
+		assertNotNull(sample);
+		assertEquals(96000, sample.getFrameRate(), 0);
+		assertEquals(0.5, sample.readDouble(0), 0);
+		assertEquals(-1 / 8388608.0, sample.readDouble(1), 0);
+	}
+
+	@Test
+	public void testAifcLittleEndian() throws IOException {
+		ByteBuffer ssnd = ByteBuffer.allocate(8 + 4);
+		ssnd.putInt(0);
+		ssnd.putInt(0);
+		ssnd.put(JSynMappedSampleTest.bytes(ByteOrder.LITTLE_ENDIAN, 16384, -32768));
+		JSynMappedSample sample = this.map("FORM", "AIFC", ByteOrder.BIG_ENDIAN,
+				JSynMappedSampleTest.chunk("COMM", JSynMappedSampleTest.aiffCommon(2, 1, 16, 44100, "sowt"), ByteOrder.BIG_ENDIAN),
+				JSynMappedSampleTest.chunk("SSND", ssnd.array(), ByteOrder.BIG_ENDIAN));
+		assertNotNull(sample);
+		assertEquals(2, sample.getChannelsPerFrame());
+		assertEquals(0.5, sample.readDouble(0), 0);
+		assertEquals(-1, sample.readDouble(1), 0);
+	}
+
+	@Test
+	public void testUnsupported() throws IOException {
+		// compressed AIFC data can't be read directly
+		assertNull(this.map("FORM", "AIFC", ByteOrder.BIG_ENDIAN,
+				JSynMappedSampleTest.chunk("COMM", JSynMappedSampleTest.aiffCommon(1, 1, 16, 44100, "ulaw"), ByteOrder.BIG_ENDIAN),
+				JSynMappedSampleTest.chunk("SSND", new byte[10], ByteOrder.BIG_ENDIAN)));
+		// neither can ADPCM WAV files
+		assertNull(this.map("RIFF", "WAVE", ByteOrder.LITTLE_ENDIAN,
+				JSynMappedSampleTest.chunk("fmt ", JSynMappedSampleTest.waveFormat(2, 1, 44100, 4), ByteOrder.LITTLE_ENDIAN),
+				JSynMappedSampleTest.chunk("data", new byte[4], ByteOrder.LITTLE_ENDIAN)));
+		// or files without a data chunk
+		assertNull(this.map("RIFF", "WAVE", ByteOrder.LITTLE_ENDIAN,
+				JSynMappedSampleTest.chunk("fmt ", JSynMappedSampleTest.waveFormat(1, 1, 44100, 16), ByteOrder.LITTLE_ENDIAN)));
+	}
+}
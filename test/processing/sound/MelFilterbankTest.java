@@ -0,0 +1,126 @@
+package processing.sound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class MelFilterbankTest {
+
+	private static final int BINS = 513;
+	private static final int BANDS = 40;
+	private static final float FRAME_RATE = 44100;
+
+	/**
+	 * The weight of every band for the given bin, read by applying the
+	 * filterbank to a spectrum with a single non-zero bin
+	 */
+	private static float[] weights(MelFilterbank filterbank, int bins, int bin) {
+		float[] magnitudes = new float[bins];
+		magnitudes[bin] = 1;
+		float[] weights = new float[filterbank.bands];
+		filterbank.apply(magnitudes, weights);
+		return weights;
+	}
+
+	private static double toHertz(double mel) {
+		return 700 * (Math.pow(10, mel / 2595) - 1);
+	}
+
+	@Test
+	public void testTrianglesSum() {
+		MelFilterbank filterbank = MelFilterbank.get(BINS, BANDS, FRAME_RATE);
+		double binWidth = FRAME_RATE / (2.0 * (BINS - 1));
+		double maxMel = 2595 * Math.log10(1 + FRAME_RATE / 2 / 700);
+		double firstCenter = MelFilterbankTest.toHertz(maxMel / (BANDS + 1));
+		double lastCenter = MelFilterbankTest.toHertz(maxMel * BANDS / (BANDS + 1));
+		for (int bin = 0; bin < BINS; bin++) {
+			float[] weights = MelFilterbankTest.weights(filterbank, BINS, bin);
+			float sum = 0;
+			int nonZero = 0;
+			for (float weight : weights) {
+				assertTrue(weight >= 0 && weight <= 1);
+				sum += weight;
+				if (weight > 0) {
+					nonZero++;
+				}
+			}
+			// every bin lies on the rising edge of one triangle and the falling
+			// edge of the previous one
+			assertTrue("bin " + bin, nonZero <= 2);
+			double frequency = bin * binWidth;
+			if (frequency >= firstCenter && frequency <= lastCenter) {
+				assertEquals("bin " + bin, 1, sum, 1e-5);
+			}
+		}
+	}
+
+	@Test
+	public void testEdgeBins() {
+		MelFilterbank filterbank = MelFilterbank.get(BINS, BANDS, FRAME_RATE);
+		// the lowest filter starts at 0Hz and the highest ends at the Nyquist
+		// frequency, both with a weight of 0
+		for (float weight : MelFilterbankTest.weights(filterbank, BINS, 0)) {
+			assertEquals(0, weight, 0);
+		}
+		for (float weight : MelFilterbankTest.weights(filterbank, BINS, BINS - 1)) {
+			assertEquals(0, weight, 1e-6);
+		}
+		// the highest filter does cover the bins just below the Nyquist frequency
+		assertTrue(MelFilterbankTest.weights(filterbank, BINS, BINS - 2)[BANDS - 1] > 0);
+	}
+
+	@Test
+	public void testNarrowFilters() {
+		// with more bands than bins, the lowest filters fall between two bins
+		// and stay empty
+		MelFilterbank filterbank = MelFilterbank.get(17, 64, FRAME_RATE);
+		float[] magnitudes = new float[17];
+		for (int i = 0; i < magnitudes.length; i++) {
+			magnitudes[i] = 1;
+		}
+		float[] energies = new float[64];
+		filterbank.apply(magnitudes, energies);
+		assertEquals(0, energies[0], 0);
+	}
+
+	@Test
+	public void testShared() {
+		assertSame(MelFilterbank.get(BINS, BANDS, FRAME_RATE), MelFilterbank.get(BINS, BANDS, FRAME_RATE));
+		assertSame(MelFilterbank.getDct(BANDS, 13), MelFilterbank.getDct(BANDS, 13));
+	}
+
+	@Test
+	public void testDctOrthonormal() {
+		for (int bands : new int[] { 1, 8, 40 }) {
+			float[] dct = MelFilterbank.getDct(bands, bands);
+			for (int k = 0; k < bands; k++) {
+				for (int l = 0; l < bands; l++) {
+					double dot = 0;
+					for (int n = 0; n < bands; n++) {
+						dot += dct[k * bands + n] * dct[l * bands + n];
+					}
+					assertEquals(bands + " bands, rows " + k + " and " + l, k == l ? 1 : 0, dot, 1e-5);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDctCoefficients() {
+		// fewer coefficients are the first rows of the full matrix, and a
+		// constant input only has a first coefficient
+		float[] full = MelFilterbank.getDct(BANDS, BANDS);
+		float[] dct = MelFilterbank.getDct(BANDS, 13);
+		for (int i = 0; i < dct.length; i++) {
+			assertEquals(full[i], dct[i], 0);
+		}
+		for (int k = 0; k < 13; k++) {
+			double sum = 0;
+			for (int n = 0; n < BANDS; n++) {
+				sum += dct[k * BANDS + n];
+			}
+			assertEquals("coefficient " + k, k == 0 ? Math.sqrt(BANDS) : 0, sum, 1e-4);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package processing.sound;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+import com.jsyn.data.FloatSample;
+
+public class ResamplerTest {
+
+	private static final double FREQUENCY = 1000;
+	// the first and last 16 zero crossings of the kernel reach past the ends
+	// of the input
+	private static final int EDGE = 64;
+
+	private static FloatSample sine(int frames, double frameRate, int channels) {
+		float[] data = new float[frames * channels];
+		for (int i = 0; i < frames; i++) {
+			for (int c = 0; c < channels; c++) {
+				data[i * channels + c] = (float) (0.5 * Math.sin(2 * Math.PI * FREQUENCY * i / frameRate + c));
+			}
+		}
+		FloatSample sample = new FloatSample(data, channels);
+		sample.setFrameRate(frameRate);
+		return sample;
+	}
+
+	private static void assertSine(FloatSample sample, double tolerance) {
+		int channels = sample.getChannelsPerFrame();
+		double frameRate = sample.getFrameRate();
+		for (int i = EDGE; i < sample.getNumFrames() - EDGE; i++) {
+			for (int c = 0; c < channels; c++) {
+				double expected = 0.5 * Math.sin(2 * Math.PI * FREQUENCY * i / frameRate + c);
+				assertEquals("frame " + i, expected, sample.readDouble(i * channels + c), tolerance);
+			}
+		}
+	}
+
+	@Test
+	public void testDownsampling() {
+		// spans several chunks, to check that they are written to the right frames
+		FloatSample result = Resampler.resample(ResamplerTest.sine(160000, 48000, 1), 44100, 32);
+		assertEquals(44100, result.getFrameRate(), 0);
+		assertEquals(147000, result.getNumFrames());
+		ResamplerTest.assertSine(result, 3e-5);
+	}
+
+	@Test
+	public void testUpsampling() {
+		FloatSample result = Resampler.resample(ResamplerTest.sine(22050, 22050, 2), 44100, 32);
+		assertEquals(2, result.getChannelsPerFrame());
+		assertEquals(44100, result.getNumFrames());
+		ResamplerTest.assertSine(result, 3e-5);
+	}
+
+	@Test
+	public void testCompactStorage() {
+		FloatSample result = Resampler.resample(ResamplerTest.sine(96000, 48000, 1), 44100, 16);
+		assertEquals(JSynCompactSample.class, result.getClass());
+		assertEquals(44100, result.getFrameRate(), 0);
+		// 16 bit quantization
+		ResamplerTest.assertSine(result, 3e-5 + 1 / 32768.0);
+	}
+}
@@ -0,0 +1,59 @@
+package processing.sound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class STFTTest {
+
+	private static final int BANDS = 64;
+
+	// feed the given samples to the unit block by block, like the synthesis engine
+	private static void feed(JSynSTFT stft, float[] samples) {
+		double[] values = stft.input.getValues();
+		for (int i = 0; i < samples.length; i += values.length) {
+			for (int j = 0; j < values.length; j++) {
+				values[j] = samples[i + j];
+			}
+			stft.generate(0, values.length);
+		}
+	}
+
+	@Test
+	public void testNewestHalfOfWindowIsAnalyzed() {
+		JSynSTFT stft = new JSynSTFT(BANDS, BANDS, 4);
+		// silence, followed by a sine with 8 periods per window only in the
+		// newest half of the window
+		float[] samples = new float[2 * BANDS];
+		for (int i = BANDS; i < samples.length; i++) {
+			samples[i] = (float) Math.sin(2 * Math.PI * 8 * i / samples.length);
+		}
+		feed(stft, samples);
+
+		assertEquals(1, stft.available());
+		float[] spectrum = new float[BANDS];
+		assertEquals(2 * BANDS, stft.poll(spectrum));
+		int peak = 0;
+		for (int i = 0; i < spectrum.length; i++) {
+			if (spectrum[i] > spectrum[peak]) {
+				peak = i;
+			}
+		}
+		assertEquals(8, peak);
+		assertTrue(spectrum[peak] > 0.2f);
+	}
+
+	@Test
+	public void testHopAndDroppedFrames() {
+		JSynSTFT stft = new JSynSTFT(BANDS, 16, 2);
+		feed(stft, new float[2 * BANDS + 64]);
+		// one spectrum after the first full window, then one every 16 samples,
+		// but only two fit into the queue
+		assertEquals(2, stft.available());
+		assertEquals(3, stft.getDropped());
+		float[] spectrum = new float[BANDS];
+		assertEquals(2 * BANDS, stft.poll(spectrum));
+		assertEquals(2 * BANDS + 16, stft.poll(spectrum));
+		assertEquals(-1, stft.poll(spectrum));
+	}
+}
@@ -0,0 +1,51 @@
+package processing.sound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import com.jsyn.data.FloatSample;
+
+public class SpectrogramTest {
+
+	private static final int BANDS = 64;
+
+	@Test
+	public void testMatchesSTFT() {
+		float[] data = new float[8 * BANDS];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (float) (Math.sin(0.3 * i) + 0.5 * Math.sin(0.05 * i * i / data.length));
+		}
+		Spectrogram spectrogram = Spectrogram.get(new FloatSample(data), BANDS, BANDS, false);
+		assertNotNull(spectrogram);
+		// only full windows are analyzed
+		assertEquals(7, spectrogram.frames());
+
+		JSynSTFT stft = new JSynSTFT(BANDS, BANDS, 16);
+		double[] values = stft.input.getValues();
+		for (int i = 0; i < data.length; i += values.length) {
+			for (int j = 0; j < values.length; j++) {
+				values[j] = data[i + j];
+			}
+			stft.generate(0, values.length);
+		}
+		assertEquals(spectrogram.frames(), stft.available());
+		float[] expected = new float[BANDS];
+		for (int frame = 0; frame < spectrogram.frames(); frame++) {
+			stft.poll(expected);
+			for (int band = 0; band < BANDS; band++) {
+				assertEquals(expected[band], spectrogram.get(frame, band), 1e-5);
+			}
+		}
+	}
+
+	@Test
+	public void testCacheInvalidation() {
+		FloatSample sample = new FloatSample(4 * BANDS);
+		Spectrogram first = Spectrogram.get(sample, BANDS, BANDS, true);
+		assertTrue(first == Spectrogram.get(sample, BANDS, BANDS, true));
+		Spectrogram.invalidate(sample);
+		assertTrue(first != Spectrogram.get(sample, BANDS, BANDS, true));
+	}
+}